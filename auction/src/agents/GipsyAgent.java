@@ -10,7 +10,7 @@ public class GipsyAgent extends MetaAgent {
 
 	@Override
 	public void setup(Topology topology, TaskDistribution distribution, Agent agent) {
-		Strategy gipsy = StrategyFactory.gipsy(agent, distribution);
+		Strategy gipsy = StrategyFactory.gipsy(agent, topology, distribution);
 		init(agent, gipsy);
 	}
 
@@ -0,0 +1,16 @@
+package agents;
+
+import logist.agent.Agent;
+import logist.task.TaskDistribution;
+import logist.topology.Topology;
+import strategy.Strategy;
+import strategy.StrategyFactory;
+
+public class LNSAgent extends MetaAgent {
+
+	@Override
+	public void setup(Topology topology, TaskDistribution distribution, Agent agent) {
+		Strategy lns = StrategyFactory.lns(agent, topology);
+		init(agent, lns);
+	}
+}
@@ -10,7 +10,7 @@ public class SafeGamblerAgent extends MetaAgent {
 
 	@Override
 	public void setup(Topology topology, TaskDistribution distribution, Agent agent) {
-		Strategy safe = StrategyFactory.safeGambler(agent);
+		Strategy safe = StrategyFactory.safeGambler(agent, topology);
 		init(agent, safe);
 	}
 }
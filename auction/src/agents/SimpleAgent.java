@@ -10,7 +10,7 @@ public class SimpleAgent extends MetaAgent {
 
 	@Override
 	public void setup(Topology topology, TaskDistribution distribution, Agent agent) {
-		Strategy simple = StrategyFactory.simple(agent);
+		Strategy simple = StrategyFactory.simple(agent, topology);
 		init(agent, simple);
 	}
 }
@@ -0,0 +1,37 @@
+package estimator;
+
+import static utils.Utils.ensure;
+import logist.task.Task;
+import planner.PlannerTrait;
+
+/**
+ * Fast cost estimator: the task is inserted where it costs the least in the current plan (see
+ * PlannerTrait.insertTask), which is usually already known; a part of the remaining time can then be used to polish
+ * the resulting plan.
+ */
+public class CheapestInsertion extends CostEstimatorTrait {
+
+	private final double polishRatio; // ratio of the remaining time spent improving the plan with the extra task
+
+	public CheapestInsertion(double polishRatio) {
+		this.polishRatio = polishRatio;
+
+		ensure(polishRatio >= 0 && polishRatio <= 1, "invalid polish ratio");
+	}
+
+	@Override
+	public Result computeMC(PlannerTrait planner, Task task, long timeout) {
+		long startTime = System.currentTimeMillis();
+		double currentCost = planner.generatePlans(timeout / 2).computeCost(); // usually cached
+
+		PlannerTrait extendedPlan = planner.insertTask(task);
+
+		long remaining = Math.max(0, timeout - (System.currentTimeMillis() - startTime));
+		double costWithExtraTask = extendedPlan.generatePlans((long) (remaining * polishRatio)).computeCost();
+
+		double mc = Math.max(0, costWithExtraTask - currentCost);
+
+		return new Result(mc, extendedPlan);
+	}
+
+}
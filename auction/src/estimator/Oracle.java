@@ -1,6 +1,14 @@
 package estimator;
 
 import static utils.Utils.ensure;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
 import logist.task.DefaultTaskDistribution;
 import logist.task.Task;
 import logist.task.TaskDistribution;
@@ -13,15 +21,26 @@ public class Oracle extends NoFuture {
 	private final double riskTolerance;
 	private final DefaultTaskDistribution distribution;
 
+	private final int workers; // 1 means sequential
+
 	public Oracle(int minTasks, int nbPredictions, double riskTolerance, TaskDistribution distribution) {
+		this(minTasks, nbPredictions, riskTolerance, distribution, 1);
+	}
+
+	/**
+	 * With more than one worker, the predictions are computed in parallel
+	 */
+	public Oracle(int minTasks, int nbPredictions, double riskTolerance, TaskDistribution distribution, int workers) {
 		this.minTasks = minTasks;
 		this.nbPredictions = nbPredictions;
 		this.riskTolerance = riskTolerance;
 		this.distribution = (DefaultTaskDistribution) distribution;
+		this.workers = workers;
 
 		ensure(minTasks >= 0, "invalid minimun number of tasks");
 		ensure(nbPredictions >= 1, "invalid number of predications");
 		ensure(riskTolerance >= 0 && riskTolerance <= 1, "invalid risk tolerance");
+		ensure(workers >= 1, "invalid number of workers");
 	}
 
 	@Override
@@ -32,25 +51,27 @@ public class Oracle extends NoFuture {
 		if (planner.tasks.size() >= minTasks || normalResult.mc == 0)
 			return normalResult;
 
+		// Extend the current planner with random tasks; this is done up front because the distribution's random
+		// generator is not meant to be shared between threads
+		List<PlannerTrait> visions = new ArrayList<>(nbPredictions);
+		for (int i = 0; i < nbPredictions; ++i) {
+			PlannerTrait vision = planner;
+			while (vision.tasks.size() < minTasks) {
+				vision = vision.extendPlan(createTask());
+			}
+			visions.add(vision);
+		}
+
 		long midTime = System.currentTimeMillis();
 		timeout -= (midTime - startTime);
-		long timeshare = (long) ((timeout * 0.95) / nbPredictions);
+		int rounds = (nbPredictions + workers - 1) / workers; // number of predictions computed by each worker
+		long timeshare = (long) ((timeout * 0.95) / rounds);
 
 		// Compute a few estimation
 		double worsePrediction = Double.NEGATIVE_INFINITY;
 		double bestPrediction = Double.POSITIVE_INFINITY;
 		double sum = 0;
-		for (int i = 0; i < nbPredictions; ++i) {
-			startTime = System.currentTimeMillis();
-			PlannerTrait vision = planner;
-
-			// Extend the current planner with random tasks
-			while (vision.tasks.size() < minTasks) {
-				vision = vision.extendPlan(createTask());
-			}
-
-			midTime = System.currentTimeMillis();
-			double prediction = super.computeMC(vision, task, timeshare - (midTime - startTime)).mc;
+		for (double prediction : predict(visions, task, timeshare)) {
 			worsePrediction = Math.max(worsePrediction, prediction);
 			bestPrediction = Math.min(bestPrediction, prediction);
 
@@ -72,6 +93,49 @@ public class Oracle extends NoFuture {
 		return new Result(prediction, null); // no associated planner
 	}
 
+	/**
+	 * Compute the marginal cost of `task` for each vision of the future, in parallel with more than one worker. Each
+	 * vision is an independent planner so they don't share any state. The pool only lives for the duration of the
+	 * call, so that no thread outlives the estimator.
+	 */
+	private double[] predict(List<PlannerTrait> visions, final Task task, final long timeshare) {
+		double[] predictions = new double[visions.size()];
+
+		if (workers == 1) {
+			for (int i = 0; i < predictions.length; ++i) {
+				predictions[i] = super.computeMC(visions.get(i), task, timeshare).mc;
+			}
+			return predictions;
+		}
+
+		List<Callable<Double>> jobs = new ArrayList<>(visions.size());
+		for (final PlannerTrait vision : visions) {
+			jobs.add(new Callable<Double>() {
+				@Override
+				public Double call() {
+					return Oracle.super.computeMC(vision, task, timeshare).mc;
+				}
+			});
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(Math.min(workers, jobs.size()));
+		try {
+			List<Future<Double>> results = pool.invokeAll(jobs);
+			for (int i = 0; i < predictions.length; ++i) {
+				predictions[i] = results.get(i).get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while predicting the future", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("A prediction failed", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+
+		return predictions;
+	}
+
 	/**
 	 * Generate a random task
 	 */
@@ -3,34 +3,34 @@ package planner;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import logist.plan.Plan;
 import logist.simulation.Vehicle;
 import logist.task.Task;
 import logist.task.TaskSet;
-import logist.topology.Topology.City;
-import planner.Action.Event;
+import utils.TopologyIndex;
 
 /**
  * Define plans for the vehicle of one agent
  */
 public class GeneralPlan {
-	private final Map<Vehicle, List<Action>> plans; // One plan per vehicle
+	private final VehiclePlan[] plans; // One plan per vehicle, in the same order as `vehicles`
 
 	// Keep track of the vehicle order to construct a logist plan
 	private final List<Vehicle> vehicles;
 
+	private final TopologyIndex topology;
+
 	private double overallCache = -1; // for lazy evaluation
 	private List<Plan> logistPlansCache = null; // for lazy evaluation
 
-	// NOTE: if needed, for optimization purpose only, we can create a class for immutable Vehicle Plan in order to
-	// cache plans' cost: that way, when some vehicles' plans are not changed we don't have to recompute things we
-	// already know about.
+	// NOTE: vehicles' plans are immutable. This allows `apply` to share the plans of the vehicles that are not affected
+	// by a move with the new GeneralPlan; their cost is cached inside them.
 
-	public GeneralPlan(Map<Vehicle, List<Action>> plans, List<Vehicle> vehicles) {
+	public GeneralPlan(VehiclePlan[] plans, List<Vehicle> vehicles) {
 		this.plans = plans;
 		this.vehicles = vehicles;
+		this.topology = plans[0].getTasks().topology;
 	}
 
 	public double computeCost() {
@@ -39,33 +39,226 @@ public class GeneralPlan {
 			return overallCache;
 
 		overallCache = 0;
-		for (Vehicle vehicle : vehicles) {
-			List<Action> plan = plans.get(vehicle);
-			overallCache += computeCost(vehicle, plan);
+		for (VehiclePlan plan : plans) {
+			overallCache += plan.getCost();
 		}
 
 		return overallCache;
 	}
 
-	private double computeCost(Vehicle vehicle, List<Action> actions) {
-		double cost = 0;
-		City currentCity = vehicle.getCurrentCity();
+	/**
+	 * Compute, in constant time, the cost difference implied by moving the action at index `sourceIndex` of the
+	 * `vehicle`-th plan such that it ends up at index `destinationIndex`.
+	 *
+	 * Only the cities surrounding the moved action, before and after the move, are required to do so.
+	 */
+	double computeShiftDelta(int vehicle, int sourceIndex, int destinationIndex) {
+		assert sourceIndex != destinationIndex;
+
+		final VehiclePlan plan = plans[vehicle];
+		final int moved = plan.getCityId(sourceIndex);
+
+		// Remove the action from its original location
+		int before = plan.getCityId(sourceIndex - 1);
+		int after = plan.getCityId(sourceIndex + 1);
+		double delta = distance(before, after) - distance(before, moved) - distance(moved, after);
+
+		// Insert it in the plan without the moved action; express the new neighbors in the original plan indices
+		int previousIndex = sourceIndex > destinationIndex ? destinationIndex - 1 : destinationIndex;
+		int previous = plan.getCityId(previousIndex);
+		int next = plan.getCityId(previousIndex + 1);
+		delta += distance(previous, moved) + distance(moved, next) - distance(previous, next);
+
+		return delta * plan.vehicle.costPerKm();
+	}
+
+	/**
+	 * Compute, in constant time for the destination vehicle and in linear time for the source vehicle (the delivery
+	 * has to be found), the cost difference implied by transferring the first task of the `source`-th plan to the
+	 * beginning of the `destination`-th plan.
+	 */
+	double computeTransferDelta(int source, int destination) {
+		final VehiclePlan sourcePlan = plans[source];
+		final int taskIndex = sourcePlan.getTaskIndexAt(0);
+		final int deliveryIndex = sourcePlan.indexOf(VehiclePlan.delivery(taskIndex));
+
+		// Remove the pickup and the delivery actions from the source vehicle
+		final int sourceStart = sourcePlan.getCityId(-1);
+		int pickup = sourcePlan.getCityId(0);
+		int delivery = sourcePlan.getCityId(deliveryIndex);
+		double sourceDelta;
+		if (deliveryIndex == 1) {
+			int next = sourcePlan.getCityId(2);
+			sourceDelta = distance(sourceStart, next) - distance(sourceStart, pickup) - distance(pickup, delivery)
+					- distance(delivery, next);
+		} else {
+			int afterPickup = sourcePlan.getCityId(1);
+			int beforeDelivery = sourcePlan.getCityId(deliveryIndex - 1);
+			int afterDelivery = sourcePlan.getCityId(deliveryIndex + 1);
+			sourceDelta = distance(sourceStart, afterPickup) - distance(sourceStart, pickup)
+					- distance(pickup, afterPickup);
+			sourceDelta += distance(beforeDelivery, afterDelivery) - distance(beforeDelivery, delivery)
+					- distance(delivery, afterDelivery);
+		}
+
+		// Add both actions at the beginning of the destination vehicle
+		final VehiclePlan destinationPlan = plans[destination];
+		final int destinationStart = destinationPlan.getCityId(-1);
+		int first = destinationPlan.getCityId(0);
+		double destinationDelta = distance(destinationStart, pickup) + distance(pickup, delivery)
+				+ distance(delivery, first) - distance(destinationStart, first);
+
+		return sourceDelta * sourcePlan.vehicle.costPerKm() + destinationDelta
+				* destinationPlan.vehicle.costPerKm();
+	}
+
+	/**
+	 * Build the plan resulting from the given move; only the plans of the affected vehicles are rebuilt.
+	 */
+	GeneralPlan apply(Move move) {
+		VehiclePlan[] newPlans = plans.clone();
+
+		if (move.isTransfer()) {
+			int taskIndex = plans[move.source].getTaskIndexAt(move.sourceIndex);
+			newPlans[move.source] = plans[move.source].remove(taskIndex);
+			newPlans[move.destination] = plans[move.destination].insert(taskIndex, 0, 1);
+		} else {
+			newPlans[move.source] = plans[move.source].shift(move.sourceIndex, move.destinationIndex);
+		}
+
+		return new GeneralPlan(newPlans, vehicles);
+	}
+
+	/**
+	 * Cheapest way to insert a task in the plan of one vehicle; the indices are the ones of the actions in the new
+	 * plan
+	 */
+	static final class Insertion {
+		final int vehicle;
+		final int taskIndex;
+		final int pickupIndex;
+		final int deliveryIndex;
+		final double delta; // cost difference implied by the insertion
+
+		Insertion(int vehicle, int taskIndex, int pickupIndex, int deliveryIndex, double delta) {
+			this.vehicle = vehicle;
+			this.taskIndex = taskIndex;
+			this.pickupIndex = pickupIndex;
+			this.deliveryIndex = deliveryIndex;
+			this.delta = delta;
+		}
+	}
+
+	/**
+	 * Find where the `taskIndex`-th task of `taskTable`, which is not part of the `vehicle`-th plan, can be inserted in
+	 * this plan for the least cost. Every pair of positions is considered; the capacity is checked with the loads
+	 * already known by the plan. Return null if the vehicle cannot carry the task.
+	 */
+	Insertion findCheapestInsertion(int vehicle, TaskTable taskTable, int taskIndex) {
+		final int pickup = taskTable.getPickupCity(taskIndex);
+		final int delivery = taskTable.getDeliveryCity(taskIndex);
+		final int weight = taskTable.get(taskIndex).weight;
+
+		final VehiclePlan plan = plans[vehicle];
+		final int capacity = plan.vehicle.capacity();
+
+		int bestPickupIndex = -1;
+		int bestDeliveryIndex = -1;
+		double bestDelta = Double.POSITIVE_INFINITY;
+
+		// The pickup is inserted before the i-th action and the delivery before the j-th one (original indices)
+		for (int i = 0; i <= plan.size(); ++i) {
+			if (plan.getLoad(i - 1) + weight > capacity)
+				continue;
+
+			int before = plan.getCityId(i - 1);
+			int after = plan.getCityId(i);
 
-		for (Action action : actions) {
-			City nextCity = null;
-			if (action.event == Event.PICK) {
-				nextCity = action.task.pickupCity;
-			} else {
-				nextCity = action.task.deliveryCity;
+			// Deliver right after the pickup
+			double delta = distance(before, pickup) + distance(pickup, delivery) + distance(delivery, after)
+					- distance(before, after);
+			if (delta < bestDelta) {
+				bestDelta = delta;
+				bestPickupIndex = i;
+				bestDeliveryIndex = i + 1;
 			}
 
-			double distance = currentCity.distanceTo(nextCity);
-			currentCity = nextCity;
+			// Deliver later on, as long as the task fits in the vehicle in between
+			double pickupDelta = distance(before, pickup) + distance(pickup, after) - distance(before, after);
+			for (int j = i + 1; j <= plan.size() && plan.getLoad(j - 1) + weight <= capacity; ++j) {
+				int beforeDelivery = plan.getCityId(j - 1);
+				int afterDelivery = plan.getCityId(j);
+				delta = pickupDelta + distance(beforeDelivery, delivery) + distance(delivery, afterDelivery)
+						- distance(beforeDelivery, afterDelivery);
+				if (delta < bestDelta) {
+					bestDelta = delta;
+					bestPickupIndex = i;
+					bestDeliveryIndex = j + 1; // the pickup is now before it
+				}
+			}
+		}
+
+		if (bestPickupIndex < 0)
+			return null;
+
+		return new Insertion(vehicle, taskIndex, bestPickupIndex, bestDeliveryIndex, bestDelta
+				* plan.vehicle.costPerKm());
+	}
+
+	/**
+	 * Build the plan where the `taskIndex`-th task of `extendedTasks`, which is not part of this plan, is inserted
+	 * where it costs the least, in any vehicle (see findCheapestInsertion). Return null if no vehicle can carry the
+	 * task.
+	 */
+	GeneralPlan insertCheapest(TaskTable extendedTasks, int taskIndex) {
+		Insertion best = null;
+		for (int v = 0; v < plans.length; ++v) {
+			Insertion insertion = findCheapestInsertion(v, extendedTasks, taskIndex);
+			if (insertion != null && (best == null || insertion.delta < best.delta))
+				best = insertion;
+		}
+
+		if (best == null)
+			return null;
 
-			cost += distance * vehicle.costPerKm();
+		VehiclePlan[] newPlans = new VehiclePlan[plans.length];
+		for (int v = 0; v < plans.length; ++v) {
+			newPlans[v] = plans[v].withTasks(extendedTasks);
 		}
+		newPlans[best.vehicle] = newPlans[best.vehicle].insert(taskIndex, best.pickupIndex, best.deliveryIndex);
 
-		return cost;
+		return new GeneralPlan(newPlans, vehicles);
+	}
+
+	/**
+	 * Build the plan resulting from the given insertion, for a task of the same task table as this plan
+	 */
+	GeneralPlan insert(Insertion insertion) {
+		VehiclePlan[] newPlans = plans.clone();
+		newPlans[insertion.vehicle] = plans[insertion.vehicle].insert(insertion.taskIndex, insertion.pickupIndex,
+				insertion.deliveryIndex);
+
+		return new GeneralPlan(newPlans, vehicles);
+	}
+
+	/**
+	 * Build the plan without the tasks flagged in `removed` (indexed like the task table); the plans of the vehicles
+	 * that carry none of them are shared
+	 */
+	GeneralPlan withoutTasks(boolean[] removed) {
+		VehiclePlan[] newPlans = new VehiclePlan[plans.length];
+		for (int v = 0; v < plans.length; ++v) {
+			newPlans[v] = plans[v].removeAll(removed);
+		}
+
+		return new GeneralPlan(newPlans, vehicles);
+	}
+
+	// The distance to or from the end of a plan (-1) is 0
+	private double distance(int from, int to) {
+		if (from < 0 || to < 0)
+			return 0;
+		return topology.distance(from, to);
 	}
 
 	/**
@@ -84,56 +277,25 @@ public class GeneralPlan {
 
 		// Keep the correct order for plan
 		logistPlansCache = new ArrayList<>(vehicles.size());
-		for (Vehicle vehicle : vehicles) {
-			List<Action> plan = plans.get(vehicle);
-			Plan logistPlan = convertToLogistPlan(vehicle, plan, tasksConverter);
-			logistPlansCache.add(logistPlan);
+		for (VehiclePlan plan : plans) {
+			logistPlansCache.add(plan.convertToLogistPlan(tasksConverter));
 		}
 
 		return logistPlansCache;
 	}
 
-	private Plan convertToLogistPlan(Vehicle vehicle, List<Action> actions, HashMap<Integer, Task> tasksConverter) {
-		City currentCity = vehicle.getCurrentCity();
-		Plan logistPlan = new Plan(currentCity);
-
-		for (Action action : actions) {
-			// Get the corresponding valid task
-			Task currentTask = tasksConverter.get(action.task.id);
-
-			if (action.event == Event.PICK) {
-				// move to pickup location & pick it up
-				for (City city : currentCity.pathTo(currentTask.pickupCity)) {
-					logistPlan.appendMove(city);
-				}
-
-				logistPlan.appendPickup(currentTask);
-				currentCity = currentTask.pickupCity;
-			} else {
-				// move to delivery location & deliver
-				for (City city : currentCity.pathTo(currentTask.deliveryCity)) {
-					logistPlan.appendMove(city);
-				}
-
-				logistPlan.appendDelivery(currentTask);
-				currentCity = currentTask.deliveryCity;
-			}
-		}
+	/**
+	 * Get the plan of the `vehicle`-th vehicle
+	 */
+	public VehiclePlan getPlan(int vehicle) {
+		return plans[vehicle];
+	}
 
-		return logistPlan;
+	public VehiclePlan[] getPlans() {
+		return plans; // No copy for efficiency reason; but don't modify it!
 	}
 
-	public Map<Vehicle, List<Action>> getPlans() {
-		return plans; // No deep copy for efficiency reason. Bad design but get over it :-)
-		// NOTE:
-		// A deep copy of Map<K, List<V>> can be done like this if needed:
-		//
-		// @formatter:off
-		// Map<Vehicle, List<VehicleAction>> copy = new HashMap<>(vehicles.size());
-		// for (Vehicle vehicle : vehicles) {
-		//     copy.put(vehicle, new LinkedList<>(plans.get(vehicle));
-		// }
-		// return copy;
-		// @formatter:on
+	public List<Vehicle> getVehicles() {
+		return vehicles;
 	}
 }
@@ -0,0 +1,197 @@
+package planner;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import logist.simulation.Vehicle;
+import logist.task.Task;
+import utils.TopologyIndex;
+import utils.Utils;
+
+/**
+ * Large Neighborhood Search: the plan is repeatedly ruined and recreated (see RuinAndRecreate) and the new plan is
+ * accepted as in simulated annealing. The temperature decreases geometrically with the progress of the search, i.e.
+ * the fraction of the iterations or of the time that is used, whichever is the largest.
+ */
+public class LNSPlanner extends PlannerTrait {
+
+	// LNS SETTINGS:
+	public static class Settings {
+		public final int iterationBound; // number of ruin and recreate steps of a search
+		public final double removedRatio; // largest fraction of the tasks removed by one step
+		public final int debugLevel; // the higher the more verbose
+
+		public Settings(int iterationBound, double removedRatio, int debugLevel) {
+			this.iterationBound = iterationBound;
+			this.removedRatio = removedRatio;
+			this.debugLevel = debugLevel;
+
+			Utils.ensure(iterationBound >= 1, "at least one iteration is required");
+			Utils.ensure(removedRatio > 0 && removedRatio <= 1, "the removed ratio is a fraction of the tasks");
+		}
+	}
+
+	public static final Settings FAST_SETTINGS = new Settings(300, 0.3, 0);
+	public static final Settings NORMAL_SETTINGS = new Settings(3000, 0.3, 0);
+	public static final Settings OPTIMAL_SETTINGS = new Settings(20000, 0.3, 0);
+
+	// Initial temperature, relative to the average cost per task of the initial plan, and final one, relative to the
+	// initial temperature
+	private static final double START_TEMPERATURE_RATIO = 0.1;
+	private static final double FINAL_TEMPERATURE_RATIO = 1e-3;
+
+	private static final AtomicBoolean NEVER_STOP = new AtomicBoolean(false);
+
+	private GeneralPlan plansCache = null;
+	private VehiclePlan[] plans = null; // same order as `vehicles`
+	private final TaskTable taskTable; // the plans refer to tasks by their index in this table
+	private final Settings regularMode;
+	private final Settings optimalMode;
+
+	public LNSPlanner(List<Vehicle> vehicles, TopologyIndex topology, Settings regularMode, Settings optimalMode) {
+		super(vehicles);
+
+		this.taskTable = new TaskTable(topology);
+		this.regularMode = regularMode;
+		this.optimalMode = optimalMode;
+
+		plans = new VehiclePlan[vehicles.size()];
+		for (int i = 0; i < plans.length; ++i) {
+			plans[i] = VehiclePlan.empty(vehicles.get(i), taskTable);
+		}
+	}
+
+	private LNSPlanner(List<Vehicle> vehicles, Set<Task> tasks, TaskTable taskTable, VehiclePlan[] plans,
+			Settings regularMode, Settings optimalMode) {
+		super(vehicles, tasks);
+
+		this.plans = plans; // initial plan
+		this.taskTable = taskTable;
+		this.regularMode = regularMode;
+		this.optimalMode = optimalMode;
+	}
+
+	@Override
+	public GeneralPlan generatePlans(long timeout) {
+		if (plansCache == null) {
+			long deadline = System.currentTimeMillis() + timeout;
+			plansCache = search(regularMode, new GeneralPlan(plans, vehicles), deadline, NEVER_STOP);
+			plans = plansCache.getPlans();
+		}
+		return plansCache;
+	}
+
+	/**
+	 * Unlike the SLS, there is no need to restart from scratch: the search goes on from the best known plan, with more
+	 * iterations
+	 */
+	@Override
+	public GeneralPlan generateFinalPlans(long timeout) {
+		long deadline = System.currentTimeMillis() + timeout;
+		GeneralPlan start = plansCache != null ? plansCache : new GeneralPlan(plans, vehicles);
+
+		plansCache = search(optimalMode, start, deadline, NEVER_STOP);
+		plans = plansCache.getPlans();
+		return plansCache;
+	}
+
+	/**
+	 * The extra task is inserted where it costs the least, which is what insertTask requires too
+	 */
+	@Override
+	public PlannerTrait extendPlan(Task extraTask) {
+		Set<Task> extendedTasks = new HashSet<>(tasks);
+		extendedTasks.add(extraTask);
+
+		TaskTable extendedTaskTable = taskTable.extend(extraTask);
+
+		// Start from the best known plan
+		GeneralPlan current = plansCache != null ? plansCache : new GeneralPlan(plans, vehicles);
+		GeneralPlan inserted = current.insertCheapest(extendedTaskTable, taskTable.size());
+		Utils.ensure(inserted != null, "no vehicle is big enough");
+
+		return new LNSPlanner(vehicles, extendedTasks, extendedTaskTable, inserted.getPlans(), regularMode,
+				optimalMode);
+	}
+
+	/**
+	 * Run searches, one after the other, from the best known plan until `stop` is set. Nothing is done if no plan was
+	 * generated yet, so that a partially optimized plan is never cached.
+	 */
+	@Override
+	public void improve(AtomicBoolean stop) {
+		if (plansCache == null || tasks.size() == 0)
+			return;
+
+		int round = 0;
+		while (!stop.get()) {
+			++round;
+			GeneralPlan previous = plansCache;
+			plansCache = search(regularMode, plansCache, Long.MAX_VALUE, stop);
+			if (previous != plansCache)
+				debugPrintln(regularMode, 2, "Background improvement at round " + round + ": "
+						+ plansCache.computeCost());
+		}
+
+		plans = plansCache.getPlans();
+	}
+
+	/**
+	 * Return the best plan found from `start`; the search stops after `settings.iterationBound` iterations, at the
+	 * deadline or as soon as `stop` is set
+	 */
+	private GeneralPlan search(Settings settings, GeneralPlan start, long deadline, AtomicBoolean stop) {
+		if (tasks.size() == 0)
+			return start;
+
+		final long startTime = System.currentTimeMillis();
+		final Random random = new Random(Utils.random.nextLong());
+		final int maxRemoved = Math.max(1, (int) (settings.removedRatio * tasks.size()));
+		final RuinAndRecreate neighborhood = new RuinAndRecreate(random, maxRemoved);
+
+		final double startTemperature = START_TEMPERATURE_RATIO * start.computeCost() / tasks.size();
+
+		GeneralPlan current = start;
+		GeneralPlan best = start;
+		int iteration = 0;
+		int bestIteration = 0;
+
+		while (iteration < settings.iterationBound && !stop.get()) {
+			long now = System.currentTimeMillis();
+			if (now >= deadline)
+				break;
+
+			double progress = (double) iteration / settings.iterationBound;
+			if (deadline != Long.MAX_VALUE)
+				progress = Math.max(progress, (double) (now - startTime) / (deadline - startTime));
+			double temperature = startTemperature * Math.pow(FINAL_TEMPERATURE_RATIO, progress);
+
+			++iteration;
+			GeneralPlan neighbor = neighborhood.neighbor(current);
+
+			// Simulated annealing acceptance criterion
+			double delta = neighbor.computeCost() - current.computeCost();
+			if (delta <= 0 || (temperature > 0 && random.nextDouble() < Math.exp(-delta / temperature)))
+				current = neighbor;
+
+			if (current.computeCost() < best.computeCost()) {
+				best = current;
+				bestIteration = iteration;
+			}
+		}
+
+		debugPrintln(settings, 1, "LNS stopped at iteration " + iteration + ", best plan found at iteration "
+				+ bestIteration + " costs " + best.computeCost());
+
+		return best;
+	}
+
+	private void debugPrintln(Settings settings, int level, String msg) {
+		if (level <= settings.debugLevel) {
+			System.err.println(msg);
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package planner;
+
+/**
+ * Describe a neighbor of a GeneralPlan without building it: only the move that is eventually chosen by the SLS is
+ * applied to the plan (see GeneralPlan.apply).
+ *
+ * Vehicles are identified by their index in the plan. Two kinds of moves exist:
+ *
+ * - if `source` and `destination` are the same vehicle, the action at `sourceIndex` is shifted so that it ends up at
+ * `destinationIndex` in the new plan;
+ *
+ * - otherwise, the task picked up at `sourceIndex` (i.e. the first one) by `source` is transfered at the beginning of
+ * `destination`'s plan and `destinationIndex` is 0.
+ */
+final class Move {
+	public final int source;
+	public final int sourceIndex;
+	public final int destination;
+	public final int destinationIndex;
+
+	public final double delta; // cost difference between the plan with and without this move
+
+	public Move(int source, int sourceIndex, int destination, int destinationIndex, double delta) {
+		this.source = source;
+		this.sourceIndex = sourceIndex;
+		this.destination = destination;
+		this.destinationIndex = destinationIndex;
+		this.delta = delta;
+	}
+
+	public boolean isTransfer() {
+		return source != destination;
+	}
+
+	@Override
+	public String toString() {
+		return (isTransfer() ? "transfer " : "shift ") + source + "[" + sourceIndex + "] -> " + destination + "["
+				+ destinationIndex + "] (" + delta + ")";
+	}
+}
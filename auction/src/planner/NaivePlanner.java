@@ -2,16 +2,13 @@ package planner;
 
 import static utils.Utils.ensure;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import logist.simulation.Vehicle;
 import logist.task.Task;
-import planner.Action.Event;
+import utils.TopologyIndex;
 import utils.Utils;
 
 /**
@@ -20,18 +17,23 @@ import utils.Utils;
 public final class NaivePlanner extends PlannerTrait {
 
 	// Caches
-	private Map<Vehicle, List<Action>> plans = null;
-	private Vehicle biggestVehicle = null;
+	private VehiclePlan[] plans = null;
+	private int biggestVehicle = -1;
 
-	public NaivePlanner(List<Vehicle> vehicles) {
+	private final TaskTable taskTable; // the plans refer to tasks by their index in this table
+
+	public NaivePlanner(List<Vehicle> vehicles, TopologyIndex topology) {
 		super(vehicles);
+
+		this.taskTable = new TaskTable(topology);
 	}
 
 	// Internal constructor
-	private NaivePlanner(List<Vehicle> vehicles, Set<Task> tasks, Map<Vehicle, List<Action>> plans,
-			Vehicle biggestVehicle) {
+	private NaivePlanner(List<Vehicle> vehicles, Set<Task> tasks, TaskTable taskTable, VehiclePlan[] plans,
+			int biggestVehicle) {
 		super(vehicles, tasks);
 
+		this.taskTable = taskTable;
 		this.plans = plans;
 		this.biggestVehicle = biggestVehicle;
 	}
@@ -51,28 +53,29 @@ public final class NaivePlanner extends PlannerTrait {
 	}
 
 	private void buildPlans() {
-		biggestVehicle = Utils.getBiggestVehicle(vehicles);
+		Vehicle biggest = Utils.getBiggestVehicle(vehicles);
+		biggestVehicle = vehicles.indexOf(biggest);
 		int heaviest = Utils.getHeaviestWeight(tasks);
 
-		ensure(heaviest <= biggestVehicle.capacity(), "no vehicle is big enough");
+		ensure(heaviest <= biggest.capacity(), "no vehicle is big enough");
 
-		List<Action> planForBiggest = new ArrayList<>(tasks.size() * 2);
+		int[] planForBiggest = new int[taskTable.size() * 2];
 
-		for (Task task : tasks) {
+		for (int i = 0; i < taskTable.size(); ++i) {
 			// move & pickup
-			planForBiggest.add(new Action(Event.PICK, task));
+			planForBiggest[2 * i] = VehiclePlan.pickup(i);
 
 			// move & deliver
-			planForBiggest.add(new Action(Event.DELIVER, task));
+			planForBiggest[2 * i + 1] = VehiclePlan.delivery(i);
 		}
 
 		// Build vehicles' actions lists
-		plans = new HashMap<>(vehicles.size());
-		for (Vehicle v : vehicles) {
-			if (v.equals(biggestVehicle))
-				plans.put(v, planForBiggest);
+		plans = new VehiclePlan[vehicles.size()];
+		for (int i = 0; i < vehicles.size(); ++i) {
+			if (i == biggestVehicle)
+				plans[i] = new VehiclePlan(biggest, taskTable, planForBiggest);
 			else
-				plans.put(v, new ArrayList<>());
+				plans[i] = VehiclePlan.empty(vehicles.get(i), taskTable);
 		}
 	}
 
@@ -84,16 +87,20 @@ public final class NaivePlanner extends PlannerTrait {
 		Set<Task> extendedTasks = new HashSet<>(tasks);
 		extendedTasks.add(extraTask);
 
-		// We don't rebuild everything from scratch; instead we just extends the current plan
-		ensure(extraTask.weight <= biggestVehicle.capacity(), "biggest vehicle is too small for new task");
-		List<Action> extendedPlanForBiggest = new ArrayList<>(plans.get(biggestVehicle));
-		extendedPlanForBiggest.add(new Action(Event.PICK, extraTask));
-		extendedPlanForBiggest.add(new Action(Event.DELIVER, extraTask));
+		TaskTable extendedTaskTable = taskTable.extend(extraTask);
+		int extraTaskIndex = taskTable.size();
 
-		HashMap<Vehicle, List<Action>> extendedPlans = new HashMap<>(plans);
-		extendedPlans.put(biggestVehicle, extendedPlanForBiggest);
+		// We don't rebuild everything from scratch; instead we just extends the current plan
+		ensure(extraTask.weight <= vehicles.get(biggestVehicle).capacity(),
+				"biggest vehicle is too small for new task");
+		VehiclePlan[] extendedPlans = new VehiclePlan[plans.length];
+		for (int i = 0; i < plans.length; ++i) {
+			extendedPlans[i] = plans[i].withTasks(extendedTaskTable);
+		}
+		int end = plans[biggestVehicle].size();
+		extendedPlans[biggestVehicle] = extendedPlans[biggestVehicle].insert(extraTaskIndex, end, end + 1);
 
-		return new NaivePlanner(vehicles, extendedTasks, extendedPlans, biggestVehicle);
+		return new NaivePlanner(vehicles, extendedTasks, extendedTaskTable, extendedPlans, biggestVehicle);
 	}
 
 }
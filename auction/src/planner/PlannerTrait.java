@@ -5,6 +5,7 @@ import static utils.Utils.ensure;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import logist.simulation.Vehicle;
 import logist.task.Task;
@@ -44,4 +45,21 @@ public abstract class PlannerTrait {
 	 * Create a new planner with one more task
 	 */
 	public abstract PlannerTrait extendPlan(Task extraTask);
+
+	/**
+	 * Same as extendPlan but the new planner starts from the cheapest insertion of the task in the current plans, so
+	 * that a good plan is available right away (i.e. generatePlans with no time). By default, it simply extends the
+	 * plans.
+	 */
+	public PlannerTrait insertTask(Task extraTask) {
+		return extendPlan(extraTask);
+	}
+
+	/**
+	 * Keep improving the plans returned by generatePlans until `stop` is set; meant to be run in the background
+	 * between two calls to the planner, never concurrently with them. By default, nothing is done.
+	 */
+	public void improve(AtomicBoolean stop) {
+		// Nothing to improve
+	}
 }
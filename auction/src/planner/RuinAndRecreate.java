@@ -0,0 +1,184 @@
+package planner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import planner.GeneralPlan.Insertion;
+import utils.TopologyIndex;
+import utils.Utils;
+
+/**
+ * Large neighborhood of a GeneralPlan: up to `maxRemoved` related tasks are removed from the plan (ruin) and inserted
+ * back one by one (recreate). This changes far more of the plan at once than the moves of the SLS.
+ *
+ * The removed tasks are chosen at random, around a random task (the tasks whose pickup cities are the closest to its
+ * pickup city) or among the tasks of one vehicle. They are inserted back either greedily, the cheapest insertion
+ * first, or by regret, the task that would lose the most by not getting its best vehicle first.
+ */
+final class RuinAndRecreate {
+
+	enum Removal {
+		RANDOM, CLUSTERED, SAME_VEHICLE
+	}
+
+	private final Random random;
+	private final int maxRemoved;
+
+	RuinAndRecreate(Random random, int maxRemoved) {
+		Utils.ensure(maxRemoved >= 1, "at least one task has to be removed");
+
+		this.random = random;
+		this.maxRemoved = maxRemoved;
+	}
+
+	/**
+	 * Build a random neighbor of `current`, which has at least one task
+	 */
+	GeneralPlan neighbor(GeneralPlan current) {
+		final TaskTable taskTable = current.getPlan(0).getTasks();
+		Utils.ensure(taskTable.size() > 0, "ruin and recreate needs at least one task");
+
+		int count = 1 + random.nextInt(Math.min(maxRemoved, taskTable.size()));
+		Removal removal = Removal.values()[random.nextInt(Removal.values().length)];
+
+		List<Integer> removed;
+		switch (removal) {
+		case RANDOM:
+			removed = selectRandom(taskTable, count);
+			break;
+
+		case CLUSTERED:
+			removed = selectClustered(taskTable, count);
+			break;
+
+		case SAME_VEHICLE:
+			removed = selectSameVehicle(current, count);
+			break;
+
+		default:
+			throw new RuntimeException("Unknown removal heuristic " + removal);
+		}
+
+		boolean[] flags = new boolean[taskTable.size()];
+		for (int taskIndex : removed) {
+			flags[taskIndex] = true;
+		}
+
+		return recreate(current.withoutTasks(flags), taskTable, removed, random.nextBoolean());
+	}
+
+	private List<Integer> selectRandom(TaskTable taskTable, int count) {
+		List<Integer> indices = new ArrayList<>(taskTable.size());
+		for (int i = 0; i < taskTable.size(); ++i) {
+			indices.add(i);
+		}
+		Collections.shuffle(indices, random);
+
+		return indices.subList(0, count);
+	}
+
+	private List<Integer> selectClustered(final TaskTable taskTable, int count) {
+		final TopologyIndex topology = taskTable.topology;
+		final int seedCity = taskTable.getPickupCity(random.nextInt(taskTable.size()));
+
+		// The seed task comes first since its distance is 0
+		List<Integer> indices = new ArrayList<>(taskTable.size());
+		for (int i = 0; i < taskTable.size(); ++i) {
+			indices.add(i);
+		}
+		Collections.shuffle(indices, random); // break the ties at random
+		Collections.sort(indices, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(topology.distance(seedCity, taskTable.getPickupCity(a)),
+						topology.distance(seedCity, taskTable.getPickupCity(b)));
+			}
+		});
+
+		return indices.subList(0, count);
+	}
+
+	private List<Integer> selectSameVehicle(GeneralPlan current, int count) {
+		VehiclePlan plan;
+		do {
+			plan = current.getPlan(random.nextInt(current.getPlans().length));
+		} while (plan.size() == 0);
+
+		List<Integer> indices = new ArrayList<>(plan.size() / 2);
+		for (int i = 0; i < plan.size(); ++i) {
+			if (plan.isPickupAt(i))
+				indices.add(plan.getTaskIndexAt(i));
+		}
+		Collections.shuffle(indices, random);
+
+		return indices.subList(0, Math.min(count, indices.size()));
+	}
+
+	/**
+	 * Insert the `removed` tasks back into `ruined`, one at a time. The best insertion of each task in each vehicle is
+	 * kept between two steps: only the ones of the vehicle that just got a task are updated.
+	 */
+	private GeneralPlan recreate(GeneralPlan ruined, TaskTable taskTable, List<Integer> removed, boolean regret) {
+		final int vehicles = ruined.getPlans().length;
+
+		List<Integer> remaining = new ArrayList<>(removed);
+		Insertion[][] insertions = new Insertion[remaining.size()][vehicles];
+		for (int t = 0; t < remaining.size(); ++t) {
+			for (int v = 0; v < vehicles; ++v) {
+				insertions[t][v] = ruined.findCheapestInsertion(v, taskTable, remaining.get(t));
+			}
+		}
+
+		GeneralPlan plan = ruined;
+		int size = remaining.size(); // the remaining tasks are the first `size` ones
+		while (size > 0) {
+			int chosen = -1;
+			Insertion chosenInsertion = null;
+			double chosenKey = Double.NEGATIVE_INFINITY;
+
+			for (int t = 0; t < size; ++t) {
+				// Best and second best insertions, in different vehicles
+				Insertion best = null;
+				double secondDelta = Double.POSITIVE_INFINITY;
+				for (Insertion insertion : insertions[t]) {
+					if (insertion == null)
+						continue;
+					if (best == null || insertion.delta < best.delta) {
+						if (best != null)
+							secondDelta = best.delta;
+						best = insertion;
+					} else if (insertion.delta < secondDelta) {
+						secondDelta = insertion.delta;
+					}
+				}
+				Utils.ensure(best != null, "no vehicle is big enough");
+
+				// Ties, e.g. several tasks that fit in a single vehicle, go to the cheapest insertion
+				double key = regret ? secondDelta - best.delta : -best.delta;
+				if (chosenInsertion == null || key > chosenKey
+						|| (key == chosenKey && best.delta < chosenInsertion.delta)) {
+					chosen = t;
+					chosenInsertion = best;
+					chosenKey = key;
+				}
+			}
+
+			plan = plan.insert(chosenInsertion);
+
+			// Forget the chosen task by moving the last remaining one in its place
+			--size;
+			remaining.set(chosen, remaining.get(size));
+			insertions[chosen] = insertions[size];
+
+			for (int t = 0; t < size; ++t) {
+				insertions[t][chosenInsertion.vehicle] = plan.findCheapestInsertion(chosenInsertion.vehicle,
+						taskTable, remaining.get(t));
+			}
+		}
+
+		return plan;
+	}
+}
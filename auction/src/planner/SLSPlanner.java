@@ -1,31 +1,52 @@
 package planner;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import logist.simulation.Vehicle;
 import logist.task.Task;
-import planner.Action.Event;
+import utils.TopologyIndex;
 import utils.Utils;
 
 public class SLSPlanner extends PlannerTrait {
 
 	// SLS SETTINGS:
-	static class Settings {
-		public final int resetBound;
+	public static class Settings {
+		public final int resetBound; // number of chains, i.e. number of restarts
 		public final int stallBound;
 		public final double p;
 		public final int debugLevel; // the higher the more verbose
+		public final int workers; // number of threads running the chains; 1 means sequential
 
 		public Settings(int resetBound, int stallBound, double p, int debugLevel) {
+			this(resetBound, stallBound, p, debugLevel, 1);
+		}
+
+		public Settings(int resetBound, int stallBound, double p, int debugLevel, int workers) {
 			this.resetBound = resetBound;
 			this.stallBound = stallBound;
 			this.p = p;
 			this.debugLevel = debugLevel;
+			this.workers = workers;
+
+			Utils.ensure(workers >= 1, "at least one worker is required");
+		}
+
+		/**
+		 * Same settings but the chains run on `workers` threads; there are at least as many chains as workers
+		 */
+		public Settings parallel(int workers) {
+			return new Settings(Math.max(resetBound, workers), stallBound, p, debugLevel, workers);
 		}
 	}
 
@@ -33,25 +54,30 @@ public class SLSPlanner extends PlannerTrait {
 	public static final Settings NORMAL_SETTIGNS = new Settings(5, 3000, 0.5, 0);
 	public static final Settings OPTIMAL_SETTINGS = new Settings(7, 4000, 0.5, 0);
 
+	private static final AtomicBoolean NEVER_STOP = new AtomicBoolean(false);
+
 	private GeneralPlan plansCache = null;
-	private Map<Vehicle, List<Action>> plans = null;
+	private VehiclePlan[] plans = null; // same order as `vehicles`
+	private final TaskTable taskTable; // the plans refer to tasks by their index in this table
 	private final Settings regularMode;
 	private final Settings optimalMode;
 
-	public SLSPlanner(List<Vehicle> vehicles, Settings regularMode, Settings optimalMode) {
+	public SLSPlanner(List<Vehicle> vehicles, TopologyIndex topology, Settings regularMode, Settings optimalMode) {
 		super(vehicles);
 
+		this.taskTable = new TaskTable(topology);
 		this.regularMode = regularMode;
 		this.optimalMode = optimalMode;
 
-		generateInitial();
+		plans = generateInitial();
 	}
 
-	private SLSPlanner(List<Vehicle> vehicles, Set<Task> tasks, Map<Vehicle, List<Action>> plans, Settings regularMode,
-			Settings optimalMode) {
+	private SLSPlanner(List<Vehicle> vehicles, Set<Task> tasks, TaskTable taskTable, VehiclePlan[] plans,
+			Settings regularMode, Settings optimalMode) {
 		super(vehicles, tasks);
 
 		this.plans = plans; // initial plan
+		this.taskTable = taskTable;
 		this.regularMode = regularMode;
 		this.optimalMode = optimalMode;
 	}
@@ -73,7 +99,7 @@ public class SLSPlanner extends PlannerTrait {
 		plansCache = null;
 
 		long startTime = System.currentTimeMillis();
-		generateInitial();
+		plans = generateInitial();
 		long midTime = System.currentTimeMillis();
 		buildPlan(optimalMode, timeout - (midTime - startTime));
 
@@ -85,108 +111,182 @@ public class SLSPlanner extends PlannerTrait {
 		Set<Task> extendedTasks = new HashSet<>(tasks);
 		extendedTasks.add(extraTask);
 
-		Vehicle biggest = Utils.getBiggestVehicle(vehicles);
-		Map<Vehicle, List<Action>> extendedInitialPlans = getCopyOfPlans();
-		extendedInitialPlans.get(biggest).add(new Action(Event.PICK, extraTask));
-		extendedInitialPlans.get(biggest).add(new Action(Event.DELIVER, extraTask));
+		TaskTable extendedTaskTable = taskTable.extend(extraTask);
+		int extraTaskIndex = taskTable.size();
 
-		return new SLSPlanner(vehicles, extendedTasks, extendedInitialPlans, regularMode, optimalMode);
+		// The new task is appended to the plan of the biggest vehicle
+		int biggest = vehicles.indexOf(Utils.getBiggestVehicle(vehicles));
+		VehiclePlan[] extendedInitialPlans = new VehiclePlan[plans.length];
+		for (int i = 0; i < plans.length; ++i) {
+			extendedInitialPlans[i] = plans[i].withTasks(extendedTaskTable);
+		}
+		int end = plans[biggest].size();
+		extendedInitialPlans[biggest] = extendedInitialPlans[biggest].insert(extraTaskIndex, end, end + 1);
+
+		return new SLSPlanner(vehicles, extendedTasks, extendedTaskTable, extendedInitialPlans, regularMode,
+				optimalMode);
 	}
 
-	private void buildPlan(Settings settings, long timeout) {
-		long startTime = System.currentTimeMillis();
+	@Override
+	public PlannerTrait insertTask(Task extraTask) {
+		Set<Task> extendedTasks = new HashSet<>(tasks);
+		extendedTasks.add(extraTask);
 
-		GeneralPlan current = new GeneralPlan(plans, vehicles);
+		TaskTable extendedTaskTable = taskTable.extend(extraTask);
 
-		if (tasks.size() == 0) {
-			plansCache = current;
+		// Start from the best known plan
+		GeneralPlan current = plansCache != null ? plansCache : new GeneralPlan(plans, vehicles);
+		GeneralPlan inserted = current.insertCheapest(extendedTaskTable, taskTable.size());
+		Utils.ensure(inserted != null, "no vehicle is big enough");
+
+		return new SLSPlanner(vehicles, extendedTasks, extendedTaskTable, inserted.getPlans(), regularMode,
+				optimalMode);
+	}
+
+	/**
+	 * Run chains, one after the other, from the best known plan until `stop` is set. Nothing is done if no plan was
+	 * generated yet, so that a partially optimized plan is never cached.
+	 */
+	@Override
+	public void improve(AtomicBoolean stop) {
+		if (plansCache == null || tasks.size() == 0)
 			return;
+
+		int round = 0;
+		while (!stop.get()) {
+			Chain chain = new Chain(regularMode, round++, Utils.random.nextLong());
+			GeneralPlan localBest = chain.run(plansCache, Long.MAX_VALUE, stop);
+
+			GeneralPlan previous = plansCache;
+			plansCache = Utils.selectBest(plansCache, localBest);
+			if (previous != plansCache)
+				debugPrintln(regularMode, 2, "Background improvement at round " + round + ": "
+						+ plansCache.computeCost());
 		}
 
-		debugPrintln(settings, 1, "Generate Neighbours");
+		plans = plansCache.getPlans();
+	}
 
-		GeneralPlan globalBest = current;
-		GeneralPlan localBest = globalBest;
-		int bestReset = 0;
+	private void buildPlan(Settings settings, long timeout) {
+		final long deadline = System.currentTimeMillis() + timeout;
 
-		int iterationCount = 0;
-		int stallCount = 0;
-		int resetCount = 0;
+		GeneralPlan initial = new GeneralPlan(plans, vehicles);
 
-		boolean hasntTimeout = true;
+		if (tasks.size() == 0) {
+			plansCache = initial;
+			return;
+		}
 
-		do {
-			++iterationCount;
-			// Aold ← A
-			// no need for that
+		debugPrintln(settings, 1, "Generate Neighbours");
 
-			// N ← ChooseNeighbours(Aold, X, D, C, f)
-			List<GeneralPlan> neighbors = generateNeighbors();
+		// Each chain has its own random generator; the seeds are drawn here to keep the chains independent
+		List<Chain> chains = new ArrayList<>(settings.resetBound);
+		for (int i = 0; i < settings.resetBound; ++i) {
+			chains.add(new Chain(settings, i, Utils.random.nextLong()));
+		}
 
-			// A ← LocalChoice(N,f)
-			// GeneralPlan bestNeighbour = Utils.selectBest(null, neighbors);
-			if (Math.random() > settings.p) {
-				current = Utils.selectBest(current, neighbors);
-			} else {
-				current = Utils.getRandomElement(neighbors);
-			}
+		GeneralPlan globalBest;
+		if (settings.workers > 1) {
+			globalBest = runParallel(settings, chains, initial, deadline);
+		} else {
+			globalBest = runSequential(settings, chains, initial, deadline);
+		}
 
-			plans = current.getPlans();
+		if (System.currentTimeMillis() >= deadline)
+			debugPrintln(settings, 0, "timeout");
 
-			GeneralPlan previousLocalBest = localBest;
-			localBest = Utils.selectBest(localBest, current);
-
-			// Reset generalPlans is stuck in a local minimum
-			if (previousLocalBest == localBest) { // yes, address comparison.
-				++stallCount;
-			} else {
-				stallCount = 0;
-				debugPrintln(settings, 3, "LOCAL best was improved at iteration " + iterationCount);
-				debugPrintln(settings, 3, "Previous cost was " + previousLocalBest.computeCost());
-				debugPrintln(settings, 3, "New      cost is  " + localBest.computeCost());
-			}
+		debugPrintln(settings, 1, "Best plan cost is " + globalBest.computeCost());
 
-			if (stallCount >= settings.stallBound) {
-				debugPrintln(settings, 2, "### plans were RESET at iteration " + iterationCount + "###");
-
-				// Save local best if better than global best
-				GeneralPlan previousGlobalBest = globalBest;
-				globalBest = Utils.selectBest(globalBest, localBest);
-				if (previousGlobalBest != globalBest) {
-					debugPrintln(settings, 2, "\t>>> GLOBAL best was improved at reset " + resetCount + "<<<");
-					debugPrintln(settings, 2, "\t>>> Previous cost was " + previousGlobalBest.computeCost());
-					debugPrintln(settings, 2, "\t>>> New      cost is  " + globalBest.computeCost());
-					bestReset = resetCount;
-				}
+		plans = globalBest.getPlans();
+		plansCache = globalBest;
+	}
 
-				// Reset!
-				stallCount = 0;
-				iterationCount = 0;
-				++resetCount;
+	/**
+	 * Run the chains one after the other; the first one starts from the `initial` plan and the others from the naive
+	 * plan (see generateInitial).
+	 */
+	private GeneralPlan runSequential(Settings settings, List<Chain> chains, GeneralPlan initial, long deadline) {
+		GeneralPlan globalBest = initial;
+		int bestReset = 0;
+		int resetCount = 0;
 
-				if (resetCount < settings.resetBound) {
-					generateInitial();
-					current = new GeneralPlan(plans, vehicles);
-					localBest = current;
-				} // else: no need to do it
+		for (Chain chain : chains) {
+			GeneralPlan start = resetCount == 0 ? initial : new GeneralPlan(generateInitial(), vehicles);
+			GeneralPlan localBest = chain.run(start, deadline, NEVER_STOP);
+
+			// Save local best if better than global best
+			GeneralPlan previousGlobalBest = globalBest;
+			globalBest = Utils.selectBest(globalBest, localBest);
+			if (previousGlobalBest != globalBest) {
+				debugPrintln(settings, 2, "\t>>> GLOBAL best was improved at reset " + resetCount + "<<<");
+				debugPrintln(settings, 2, "\t>>> Previous cost was " + previousGlobalBest.computeCost());
+				debugPrintln(settings, 2, "\t>>> New      cost is  " + globalBest.computeCost());
+				bestReset = resetCount;
 			}
 
-			hasntTimeout = System.currentTimeMillis() - startTime < timeout;
-		} while (resetCount < settings.resetBound && hasntTimeout);
-
-		globalBest = Utils.selectBest(globalBest, localBest); // in case of timeout
+			++resetCount;
 
-		if (!hasntTimeout)
-			debugPrintln(settings, 0, "timeout");
+			if (System.currentTimeMillis() >= deadline)
+				break;
+		}
 
-		debugPrintln(settings, 1, "Best plan cost is " + globalBest.computeCost() + " and was found at reset = "
-				+ bestReset);
+		debugPrintln(settings, 1, "Best plan was found at reset = " + bestReset);
 		if (bestReset >= resetCount - 1) {
 			debugPrintln(settings, 0, "The best plan was found during the last reset iteration!");
 		}
 
-		plans = globalBest.getPlans();
-		plansCache = globalBest;
+		return globalBest;
+	}
+
+	/**
+	 * Run the chains on a pool of `settings.workers` threads. The chains only share the global best plan, which is
+	 * updated atomically; all of them stop at the common deadline.
+	 */
+	private GeneralPlan runParallel(Settings settings, List<Chain> chains, final GeneralPlan initial,
+			final long deadline) {
+		final AtomicReference<GeneralPlan> globalBest = new AtomicReference<>(initial);
+		final GeneralPlan naive = new GeneralPlan(generateInitial(), vehicles); // immutable, hence shareable
+
+		List<Callable<Void>> jobs = new ArrayList<>(chains.size());
+		for (final Chain chain : chains) {
+			jobs.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					if (System.currentTimeMillis() >= deadline)
+						return null; // no time left for this chain
+
+					GeneralPlan start = chain.id == 0 ? initial : naive;
+					GeneralPlan localBest = chain.run(start, deadline, NEVER_STOP);
+					localBest.computeCost(); // make sure the cost is cached before publishing the plan
+
+					GeneralPlan previous;
+					do {
+						previous = globalBest.get();
+						if (previous.computeCost() <= localBest.computeCost())
+							return null;
+					} while (!globalBest.compareAndSet(previous, localBest));
+
+					debugPrintln(settings, 2, "\t>>> GLOBAL best was improved by chain " + chain.id + "<<<");
+					return null;
+				}
+			});
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(settings.workers, jobs.size()));
+		try {
+			for (Future<Void> result : pool.invokeAll(jobs)) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while building plans", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("A SLS chain failed", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+
+		return globalBest.get();
 	}
 
 	private void debugPrintln(Settings settings, int level, String msg) {
@@ -198,7 +298,7 @@ public class SLSPlanner extends PlannerTrait {
 	/**
 	 * Generate the first, naive plan: all tasks are assigned to be biggest vehicle in a sequential order.
 	 */
-	private void generateInitial() {
+	private VehiclePlan[] generateInitial() {
 		assert vehicles.size() > 0;
 		Vehicle biggest = Utils.getBiggestVehicle(vehicles);
 		int heaviest = Utils.getHeaviestWeight(tasks);
@@ -206,299 +306,312 @@ public class SLSPlanner extends PlannerTrait {
 		if (biggest.capacity() < heaviest)
 			throw new RuntimeException("Impossible to plan: vehicles are not big enough");
 
-		List<Action> planForBiggest = new LinkedList<>();
+		int[] planForBiggest = new int[taskTable.size() * 2];
 
-		for (Task task : tasks) {
+		for (int i = 0; i < taskTable.size(); ++i) {
 			// move & pickup
-			planForBiggest.add(new Action(Event.PICK, task));
+			planForBiggest[2 * i] = VehiclePlan.pickup(i);
 
 			// move & deliver
-			planForBiggest.add(new Action(Event.DELIVER, task));
+			planForBiggest[2 * i + 1] = VehiclePlan.delivery(i);
 		}
 
 		// Build vehicles' actions lists
-		plans = new HashMap<>(vehicles.size());
-		for (Vehicle v : vehicles) {
+		VehiclePlan[] initialPlans = new VehiclePlan[vehicles.size()];
+		for (int i = 0; i < vehicles.size(); ++i) {
+			Vehicle v = vehicles.get(i);
 			if (v.equals(biggest))
-				plans.put(v, planForBiggest);
+				initialPlans[i] = new VehiclePlan(v, taskTable, planForBiggest);
 			else
-				plans.put(v, new LinkedList<>());
+				initialPlans[i] = VehiclePlan.empty(v, taskTable);
 		}
 
+		return initialPlans;
 	}
 
 	/**
-	 * Neighbor plans are computed using five strategies:
-	 * 
-	 * - the first task of a vehicle is transfered to another vehicle as long as this other vehicle has enough capacity;
-	 * 
-	 * - the pick time for a given task can be advanced as long as, at no point in time, the vehicle is overloaded;
-	 * 
-	 * - the pick time for a given task can be postponed as long as the delivery time is still after the pick up time;
-	 * 
-	 * - the delivery time for a given task can be advanced as long as the delivery time is still after the pick up
-	 * time;
-	 * 
-	 * - the delivery time for a given task can be postponed as long as, at no point in time, the vehicle is overloaded.
-	 * 
-	 * Note that this method doesn't build the full set of neighbors as it would get too big. Instead the neighbor plans
-	 * are stochastically selected. This means that running this methods twice might result in two different solution
-	 * sets.
+	 * One SLS chain: it starts from a given plan and stops once it is stuck in a local minimum or the deadline is
+	 * reached. A chain has its own random generator and buffers so that several chains can run concurrently.
 	 */
-	private List<GeneralPlan> generateNeighbors() {
+	private final class Chain {
+		final int id;
+		private final Settings settings;
+		private final Random random;
+
+		private VehiclePlan[] plans = null; // plans of the current GeneralPlan
+		private final List<Move> neighbours = new ArrayList<>(); // buffer for generateNeighbors
+
+		Chain(Settings settings, int id, long seed) {
+			this.id = id;
+			this.settings = settings;
+			this.random = new Random(seed);
+		}
 
-		List<GeneralPlan> neighbours = new LinkedList<>();
+		/**
+		 * Return the best plan found by this chain; it also stops as soon as `stop` is set
+		 */
+		GeneralPlan run(GeneralPlan current, long deadline, AtomicBoolean stop) {
+			GeneralPlan localBest = current;
+			plans = current.getPlans();
 
-		// Apply strategies for a randomly selected, non-empty vehicle
-		Vehicle modelVehicle = selectRandomVehicle();
+			int iterationCount = 0;
+			int stallCount = 0;
+
+			// Stop when stuck in a local minimum
+			while (stallCount < settings.stallBound && System.currentTimeMillis() < deadline && !stop.get()) {
+				++iterationCount;
+				// Aold ← A
+				// no need for that
+
+				// N ← ChooseNeighbours(Aold, X, D, C, f)
+				List<Move> neighbors = generateNeighbors(current);
+
+				// A ← LocalChoice(N,f)
+				// Neighbors are only described by their cost delta; the chosen one is the only one to be built
+				Move move;
+				if (random.nextDouble() > settings.p) {
+					move = selectBest(neighbors);
+				} else {
+					move = Utils.getRandomElement(neighbors, random);
+				}
 
-		neighbours.addAll(swapFirstTask(modelVehicle));
+				if (move != null)
+					current = current.apply(move);
 
-		List<Action> modelPlan = plans.get(modelVehicle);
-		for (int i = 0; i < modelPlan.size(); ++i) {
-			Action action = modelPlan.get(i);
-			if (action.event == Event.PICK) {
-				neighbours.addAll(advancePickUp(modelVehicle, i));
-				neighbours.addAll(postponePickUp(modelVehicle, i));
-			} else {
-				neighbours.addAll(advanceDelivery(modelVehicle, i));
-				neighbours.addAll(postponeDelivery(modelVehicle, i));
-			}
-		}
+				plans = current.getPlans();
 
-		return neighbours;
-	}
+				GeneralPlan previousLocalBest = localBest;
+				localBest = Utils.selectBest(localBest, current);
 
-	private List<GeneralPlan> swapFirstTask(Vehicle sourceVehicle) {
-		Utils.ensure(plans.get(sourceVehicle).size() > 0, "swapFirstTask needs a vehicle with at least one task");
+				if (previousLocalBest == localBest) { // yes, address comparison.
+					++stallCount;
+				} else {
+					stallCount = 0;
+					debugPrintln(settings, 3, "LOCAL best was improved at iteration " + iterationCount);
+					debugPrintln(settings, 3, "Previous cost was " + previousLocalBest.computeCost());
+					debugPrintln(settings, 3, "New      cost is  " + localBest.computeCost());
+				}
+			}
 
-		List<GeneralPlan> neighbours = new LinkedList<>();
+			debugPrintln(settings, 2, "### chain " + id + " stopped at iteration " + iterationCount + "###");
 
-		// Transfer the first task from the source vehicle to the other vehicles
-		List<Action> newSourcePlan = getCopyOfVehiclePlan(sourceVehicle);
-		Task transferedTask = newSourcePlan.get(0).task;
+			return localBest;
+		}
 
-		// Remove pickup & deliver actions from the source vehicle
-		newSourcePlan.remove(0);
-		for (int i = 0; i < newSourcePlan.size(); ++i) {
-			if (newSourcePlan.get(i).task.equals(transferedTask)) {
-				newSourcePlan.remove(i);
-				break;
+		/**
+		 * Neighbor plans are computed using five strategies:
+		 * 
+		 * - the first task of a vehicle is transfered to another vehicle as long as this other vehicle has enough
+		 * capacity;
+		 * 
+		 * - the pick time for a given task can be advanced as long as, at no point in time, the vehicle is overloaded;
+		 * 
+		 * - the pick time for a given task can be postponed as long as the delivery time is still after the pick up
+		 * time;
+		 * 
+		 * - the delivery time for a given task can be advanced as long as the delivery time is still after the pick up
+		 * time;
+		 * 
+		 * - the delivery time for a given task can be postponed as long as, at no point in time, the vehicle is
+		 * overloaded.
+		 * 
+		 * Note that this method doesn't build the full set of neighbors as it would get too big. Instead the neighbor
+		 * plans are stochastically selected. This means that running this methods twice might result in two different
+		 * solution sets.
+		 * 
+		 * Neighbors are returned as moves whose cost delta is computed in constant time against the current plan; no
+		 * plan is built here.
+		 */
+		private List<Move> generateNeighbors(GeneralPlan current) {
+
+			// The list is reused from one iteration to the other to avoid allocations
+			neighbours.clear();
+
+			// Apply strategies for a randomly selected, non-empty vehicle
+			int modelVehicle = selectRandomVehicle();
+
+			swapFirstTask(current, modelVehicle);
+
+			VehiclePlan modelPlan = plans[modelVehicle];
+			for (int i = 0; i < modelPlan.size(); ++i) {
+				if (modelPlan.isPickupAt(i)) {
+					advancePickUp(current, modelVehicle, i);
+					postponePickUp(current, modelVehicle, i);
+				} else {
+					advanceDelivery(current, modelVehicle, i);
+					postponeDelivery(current, modelVehicle, i);
+				}
 			}
+
+			return neighbours;
 		}
 
-		// Attempt to transfer the task to other vehicles
-		for (Vehicle destinationVehicle : vehicles) {
-			// Skip the source vehicle
-			if (destinationVehicle.equals(sourceVehicle))
-				continue;
-
-			// Skip small vehicle
-			if (destinationVehicle.capacity() < transferedTask.weight)
-				continue;
-
-			// Build new plan for destination vehicle
-			LinkedList<Action> newDestinationPlan = getCopyOfVehiclePlan(destinationVehicle);
-			newDestinationPlan.addFirst(new Action(Event.DELIVER, transferedTask));
-			newDestinationPlan.addFirst(new Action(Event.PICK, transferedTask));
-
-			// And combine everything together
-			Map<Vehicle, List<Action>> newPlans = getCopyOfPlans();
-			newPlans.put(sourceVehicle, newSourcePlan);
-			newPlans.put(destinationVehicle, newDestinationPlan);
-			GeneralPlan newGeneralPlan = new GeneralPlan(newPlans, vehicles);
-			neighbours.add(newGeneralPlan);
+		/**
+		 * Select the move with the smallest delta, or null if none improves (or keeps equal) the current plan
+		 */
+		private Move selectBest(List<Move> moves) {
+			Move best = null;
+			double bestDelta = 0;
+			for (Move move : moves) {
+				if (move.delta <= bestDelta) {
+					best = move;
+					bestDelta = move.delta;
+				}
+			}
+			return best;
 		}
 
-		return neighbours;
-	}
+		private void swapFirstTask(GeneralPlan current, int sourceVehicle) {
+			Utils.ensure(plans[sourceVehicle].size() > 0, "swapFirstTask needs a vehicle with at least one task");
 
-	private List<GeneralPlan> advancePickUp(Vehicle vehicle, int actionIndex) {
-		Utils.ensure(plans.get(vehicle).size() > actionIndex, "advancePickUp needs a vehicle with at least "
-				+ actionIndex + " events");
-		Utils.ensure(plans.get(vehicle).get(actionIndex).event == Event.PICK,
-				"advancePickUp needs an index corresponding to a pick up event");
+			// Transfer the first task from the source vehicle to the other vehicles
+			Task transferedTask = plans[sourceVehicle].getTaskAt(0);
 
-		List<GeneralPlan> neighbours = new LinkedList<>();
+			// Attempt to transfer the task to other vehicles
+			for (int destinationVehicle = 0; destinationVehicle < plans.length; ++destinationVehicle) {
+				// Skip the source vehicle
+				if (destinationVehicle == sourceVehicle)
+					continue;
 
-		if (actionIndex == 0)
-			return neighbours; // no need to do more work: it cannot be advanced
+				// Skip small vehicle
+				if (plans[destinationVehicle].vehicle.capacity() < transferedTask.weight)
+					continue;
 
-		final List<Action> originalPlan = plans.get(vehicle);
+				double delta = current.computeTransferDelta(sourceVehicle, destinationVehicle);
+				neighbours.add(new Move(sourceVehicle, 0, destinationVehicle, 0, delta));
+			}
+		}
 
-		// Compute load at pickup time
-		int load = computeLoadAtTime(actionIndex, originalPlan);
+		private void advancePickUp(GeneralPlan current, int vehicle, int actionIndex) {
+			Utils.ensure(plans[vehicle].size() > actionIndex, "advancePickUp needs a vehicle with at least "
+					+ actionIndex + " events");
+			Utils.ensure(plans[vehicle].isPickupAt(actionIndex),
+					"advancePickUp needs an index corresponding to a pick up event");
 
-		/* Try to go back in time and advance the pick up action */
+			if (actionIndex == 0)
+				return; // no need to do more work: it cannot be advanced
 
-		// First attempt: just before original time
-		int t = actionIndex - 1;
+			final VehiclePlan originalPlan = plans[vehicle];
+			final int capacity = originalPlan.vehicle.capacity();
 
-		// Continue if beginning of time is not in the future and not overloaded
-		while (t >= 0 && load - originalPlan.get(t).getDifferentialWeight() <= vehicle.capacity()) {
-			GeneralPlan newGeneralPlan = createGeneralPlanByMovingAction(vehicle, actionIndex, t);
-			neighbours.add(newGeneralPlan);
+			// Load at pickup time
+			int load = originalPlan.getLoad(actionIndex);
 
-			// Go one step back in time and update weight
-			load -= originalPlan.get(t).getDifferentialWeight();
-			--t;
-		}
+			/* Try to go back in time and advance the pick up action */
 
-		return neighbours;
-	}
+			// First attempt: just before original time
+			int t = actionIndex - 1;
 
-	private List<GeneralPlan> postponePickUp(Vehicle vehicle, int actionIndex) {
-		Utils.ensure(plans.get(vehicle).size() > actionIndex, "postponePickUp needs a vehicle with at least "
-				+ actionIndex + " events");
-		Utils.ensure(plans.get(vehicle).get(actionIndex).event == Event.PICK,
-				"postponePickUp needs an index corresponding to a pick up event");
+			// Continue if beginning of time is not in the future and not overloaded
+			while (t >= 0 && load - originalPlan.getDifferentialWeight(t) <= capacity) {
+				addShift(current, vehicle, actionIndex, t);
 
-		List<GeneralPlan> neighbours = new LinkedList<>();
+				// Go one step back in time and update weight
+				load -= originalPlan.getDifferentialWeight(t);
+				--t;
+			}
+		}
 
-		final List<Action> originalPlan = plans.get(vehicle);
-		final Task movedTask = originalPlan.get(actionIndex).task;
+		private void postponePickUp(GeneralPlan current, int vehicle, int actionIndex) {
+			Utils.ensure(plans[vehicle].size() > actionIndex, "postponePickUp needs a vehicle with at least "
+					+ actionIndex + " events");
+			Utils.ensure(plans[vehicle].isPickupAt(actionIndex),
+					"postponePickUp needs an index corresponding to a pick up event");
 
-		if (actionIndex + 1 == originalPlan.size())
-			return neighbours; // no need to do more work: it cannot be postponed
+			final VehiclePlan originalPlan = plans[vehicle];
+			final int movedTask = originalPlan.getTaskIndexAt(actionIndex);
 
-		/* Try to go forward in time and postpone the pick up action */
+			/* Try to go forward in time and postpone the pick up action */
 
-		// First attempt: just after original time
-		int t = actionIndex + 1;
+			// First attempt: just after original time
+			int t = actionIndex + 1;
 
-		// Continue if end of time is not in the past and delivery action is still in the future
-		while (t < originalPlan.size() && !originalPlan.get(t).task.equals(movedTask)) {
-			// The vehicle has enough room at time t so let's deliver the task later
-			GeneralPlan newGeneralPlan = createGeneralPlanByMovingAction(vehicle, actionIndex, t);
-			neighbours.add(newGeneralPlan);
+			// Continue if end of time is not in the past and delivery action is still in the future
+			while (t < originalPlan.size() && originalPlan.getTaskIndexAt(t) != movedTask) {
+				// Pick the task up right after the t-th action
+				addShift(current, vehicle, actionIndex, t);
 
-			// Go one step further in time
-			++t;
+				// Go one step further in time
+				++t;
+			}
 		}
 
-		return neighbours;
-	}
+		private void advanceDelivery(GeneralPlan current, int vehicle, int actionIndex) {
+			Utils.ensure(plans[vehicle].size() > actionIndex, "advanceDelivery needs a vehicle with at least "
+					+ actionIndex + " events");
+			Utils.ensure(!plans[vehicle].isPickupAt(actionIndex),
+					"advanceDelivery needs an index corresponding to a pick up event");
 
-	private List<GeneralPlan> advanceDelivery(Vehicle vehicle, int actionIndex) {
-		Utils.ensure(plans.get(vehicle).size() > actionIndex, "advanceDelivery needs a vehicle with at least "
-				+ actionIndex + " events");
-		Utils.ensure(plans.get(vehicle).get(actionIndex).event == Event.DELIVER,
-				"advanceDelivery needs an index corresponding to a pick up event");
+			if (actionIndex == 0)
+				return; // no need to do more work: it cannot be advanced
 
-		List<GeneralPlan> neighbours = new LinkedList<>();
+			/* Try to go back in time and advance the delivery action */
 
-		if (actionIndex == 0)
-			return neighbours; // no need to do more work: it cannot be advanced
+			final VehiclePlan originalPlan = plans[vehicle];
+			final int movedTask = originalPlan.getTaskIndexAt(actionIndex);
 
-		/* Try to go back in time and advance the delivery action */
+			// First attempt: just before original time
+			int t = actionIndex - 1;
 
-		final List<Action> originalPlan = plans.get(vehicle);
-		final Task movedTask = originalPlan.get(actionIndex).task;
+			// Continue if beginning of time is not in the future and pick up action is still in the past
+			while (t >= 0 && originalPlan.getTaskIndexAt(t) != movedTask) {
+				addShift(current, vehicle, actionIndex, t);
 
-		// First attempt: just before original time
-		int t = actionIndex - 1;
-
-		// Continue if beginning of time is not in the future and pick up action is still in the past
-		while (t >= 0 && !originalPlan.get(t).task.equals(movedTask)) {
-			GeneralPlan newGeneralPlan = createGeneralPlanByMovingAction(vehicle, actionIndex, t);
-			neighbours.add(newGeneralPlan);
-
-			// Go one step back in time
-			--t;
+				// Go one step back in time
+				--t;
+			}
 		}
 
-		return neighbours;
-	}
-
-	private List<GeneralPlan> postponeDelivery(Vehicle vehicle, int actionIndex) {
-		Utils.ensure(plans.get(vehicle).size() > actionIndex, "postponeDelivery needs a vehicle with at least "
-				+ actionIndex + " events");
-		Utils.ensure(plans.get(vehicle).get(actionIndex).event == Event.DELIVER,
-				"postponeDelivery needs an index corresponding to a pick up event");
-
-		List<GeneralPlan> neighbours = new LinkedList<>();
+		private void postponeDelivery(GeneralPlan current, int vehicle, int actionIndex) {
+			Utils.ensure(plans[vehicle].size() > actionIndex, "postponeDelivery needs a vehicle with at least "
+					+ actionIndex + " events");
+			Utils.ensure(!plans[vehicle].isPickupAt(actionIndex),
+					"postponeDelivery needs an index corresponding to a pick up event");
 
-		final List<Action> originalPlan = plans.get(vehicle);
+			final VehiclePlan originalPlan = plans[vehicle];
+			final int capacity = originalPlan.vehicle.capacity();
 
-		if (actionIndex + 1 == originalPlan.size())
-			return neighbours; // no need to do more work: it cannot be postponed
+			if (actionIndex + 1 == originalPlan.size())
+				return; // no need to do more work: it cannot be postponed
 
-		// Compute load right before delivery
-		int load = computeLoadAtTime(actionIndex - 1, originalPlan);
+			// Load right before delivery
+			int load = originalPlan.getLoad(actionIndex - 1);
 
-		/* Try to go forward in time and postpone the delivery action */
+			/* Try to go forward in time and postpone the delivery action */
 
-		// First attempt: just after original time
-		int t = actionIndex + 1;
+			// First attempt: just after original time
+			int t = actionIndex + 1;
 
-		// Continue if end of time is not in the past and not overloaded
-		while (t < originalPlan.size() && load + originalPlan.get(t).getDifferentialWeight() <= vehicle.capacity()) {
-			// The vehicle has enough room at time t so let's deliver the task later
-			GeneralPlan newGeneralPlan = createGeneralPlanByMovingAction(vehicle, actionIndex, t);
-			neighbours.add(newGeneralPlan);
+			// Continue if end of time is not in the past and not overloaded
+			while (t < originalPlan.size() && load + originalPlan.getDifferentialWeight(t) <= capacity) {
+				// The vehicle has enough room at time t so let's deliver the task right after the t-th action
+				addShift(current, vehicle, actionIndex, t);
 
-			// Go one step further in time and update weight
-			load += originalPlan.get(t).getDifferentialWeight();
-			++t;
+				// Go one step further in time and update weight
+				load += originalPlan.getDifferentialWeight(t);
+				++t;
+			}
 		}
 
-		return neighbours;
-	}
-
-	/**
-	 * Move the action at index `sourceIndex` of the given `vehicle` to index `destinationIndex` correctly
-	 */
-	private GeneralPlan createGeneralPlanByMovingAction(Vehicle vehicle, int sourceIndex, int destinationIndex) {
-		Map<Vehicle, List<Action>> newPlans = getCopyOfPlans();
-
-		// Move the given action carefully: make sure destination index is not invalidated
-		List<Action> newVehiclePlan = newPlans.get(vehicle);
-		Action action = newVehiclePlan.remove(sourceIndex);
-		if (sourceIndex >= destinationIndex)
-			newVehiclePlan.add(destinationIndex, action);
-		else
-			newVehiclePlan.add(destinationIndex - 1, action);
-
-		GeneralPlan newGeneralPlan = new GeneralPlan(newPlans, vehicles);
-		return newGeneralPlan;
-	}
-
-	private int computeLoadAtTime(int timeIndex, List<Action> plan) {
-		int load = 0;
-		for (int i = 0; i <= timeIndex; ++i) {
-			Action action = plan.get(i);
-			load += action.getDifferentialWeight();
+		/**
+		 * Register the move of the action at index `sourceIndex` of the given `vehicle` to index `destinationIndex`
+		 */
+		private void addShift(GeneralPlan current, int vehicle, int sourceIndex, int destinationIndex) {
+			double delta = current.computeShiftDelta(vehicle, sourceIndex, destinationIndex);
+			neighbours.add(new Move(vehicle, sourceIndex, vehicle, destinationIndex, delta));
 		}
-		return load;
-	}
 
-	// Performs deep copy of the `vehicle`'s plan
-	private LinkedList<Action> getCopyOfVehiclePlan(Vehicle vehicle) {
-		return new LinkedList<>(plans.get(vehicle));
-	}
+		/**
+		 * The returned vehicle has at least one task on its agenda
+		 */
+		private int selectRandomVehicle() {
+			int modelVehicle;
 
-	// Performs deep copy of all plans
-	private Map<Vehicle, List<Action>> getCopyOfPlans() {
-		// NOTE: using new HashMap<>(plans) won't work as values are mutable lists.
+			do {
+				modelVehicle = random.nextInt(plans.length);
+			} while (plans[modelVehicle].size() == 0);
 
-		Map<Vehicle, List<Action>> copy = new HashMap<>(vehicles.size());
-		for (Vehicle vehicle : vehicles) {
-			copy.put(vehicle, getCopyOfVehiclePlan(vehicle));
+			return modelVehicle;
 		}
-		return copy;
 	}
-
-	/**
-	 * The returned vehicle has at least one task on its agenda
-	 */
-	private Vehicle selectRandomVehicle() {
-		Vehicle modelVehicle;
-
-		do {
-			modelVehicle = Utils.getRandomElement(vehicles);
-		} while (plans.get(modelVehicle).size() == 0);
-
-		return modelVehicle;
-	}
-
 }
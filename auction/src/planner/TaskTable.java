@@ -0,0 +1,65 @@
+package planner;
+
+import java.util.Arrays;
+
+import logist.task.Task;
+import utils.TopologyIndex;
+
+/**
+ * Immutable table of the tasks known by a planner; plans refer to tasks by their index in it. The pickup and delivery
+ * cities' ids are stored alongside so that plans can be evaluated with the topology index only.
+ *
+ * Tables only grow (see `extend`) so an index stays valid in all the tables derived from the one that defined it.
+ */
+public final class TaskTable {
+
+	public final TopologyIndex topology;
+
+	private final Task[] tasks;
+	private final int[] pickupCities;
+	private final int[] deliveryCities;
+
+	public TaskTable(TopologyIndex topology) {
+		this(topology, new Task[0], new int[0], new int[0]);
+	}
+
+	private TaskTable(TopologyIndex topology, Task[] tasks, int[] pickupCities, int[] deliveryCities) {
+		this.topology = topology;
+		this.tasks = tasks;
+		this.pickupCities = pickupCities;
+		this.deliveryCities = deliveryCities;
+	}
+
+	/**
+	 * Build a new table with one more task, whose index is the size of this table
+	 */
+	public TaskTable extend(Task task) {
+		int n = tasks.length;
+
+		Task[] extendedTasks = Arrays.copyOf(tasks, n + 1);
+		int[] extendedPickupCities = Arrays.copyOf(pickupCities, n + 1);
+		int[] extendedDeliveryCities = Arrays.copyOf(deliveryCities, n + 1);
+
+		extendedTasks[n] = task;
+		extendedPickupCities[n] = task.pickupCity.id;
+		extendedDeliveryCities[n] = task.deliveryCity.id;
+
+		return new TaskTable(topology, extendedTasks, extendedPickupCities, extendedDeliveryCities);
+	}
+
+	public int size() {
+		return tasks.length;
+	}
+
+	public Task get(int index) {
+		return tasks[index];
+	}
+
+	public int getPickupCity(int index) {
+		return pickupCities[index];
+	}
+
+	public int getDeliveryCity(int index) {
+		return deliveryCities[index];
+	}
+}
@@ -0,0 +1,269 @@
+package planner;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import logist.plan.Plan;
+import logist.simulation.Vehicle;
+import logist.task.Task;
+import logist.topology.Topology.City;
+import utils.TopologyIndex;
+
+/**
+ * Immutable and compact plan for one vehicle.
+ *
+ * Actions are encoded as integers referring to the planner's task table: a non-negative value `i` means "pick up
+ * the i-th task" and a negative value `~i` means "deliver the i-th task". The load and the cost after each action are
+ * stored in prefix arrays so that capacity checks and costs are available in constant time.
+ */
+public final class VehiclePlan {
+
+	public final Vehicle vehicle;
+
+	private final TaskTable tasks; // the plan only refers to tasks by their index in it
+	private final int[] actions;
+	private final int[] loads; // load right after the i-th action
+	private final double[] costs; // cost from the start until the i-th action, included
+
+	public VehiclePlan(Vehicle vehicle, TaskTable tasks, int[] actions) {
+		this.vehicle = vehicle;
+		this.tasks = tasks;
+		this.actions = actions;
+		this.loads = new int[actions.length];
+		this.costs = new double[actions.length];
+
+		final TopologyIndex topology = tasks.topology;
+
+		int load = 0;
+		double cost = 0;
+		int currentCity = getCityId(-1);
+		for (int i = 0; i < actions.length; ++i) {
+			Task task = getTaskAt(i);
+			int nextCity = getCityId(i);
+			load += isPickup(actions[i]) ? task.weight : -task.weight;
+			cost += topology.distance(currentCity, nextCity) * vehicle.costPerKm();
+			currentCity = nextCity;
+
+			loads[i] = load;
+			costs[i] = cost;
+		}
+	}
+
+	public static VehiclePlan empty(Vehicle vehicle, TaskTable tasks) {
+		return new VehiclePlan(vehicle, tasks, new int[0]);
+	}
+
+	/* Action encoding */
+
+	public static int pickup(int taskIndex) {
+		return taskIndex;
+	}
+
+	public static int delivery(int taskIndex) {
+		return ~taskIndex;
+	}
+
+	public static boolean isPickup(int action) {
+		return action >= 0;
+	}
+
+	public static int getTaskIndex(int action) {
+		return action >= 0 ? action : ~action;
+	}
+
+	/* Accessors */
+
+	public int size() {
+		return actions.length;
+	}
+
+	public int getAction(int index) {
+		return actions[index];
+	}
+
+	public boolean isPickupAt(int index) {
+		return isPickup(actions[index]);
+	}
+
+	public int getTaskIndexAt(int index) {
+		return getTaskIndex(actions[index]);
+	}
+
+	public Task getTaskAt(int index) {
+		return tasks.get(getTaskIndex(actions[index]));
+	}
+
+	/**
+	 * Get the id of the city where the `index`-th action takes place; -1 denotes the starting city and -1 is returned
+	 * past the end of the plan
+	 */
+	public int getCityId(int index) {
+		if (index < 0)
+			return vehicle.getCurrentCity().id;
+		else if (index >= actions.length)
+			return -1;
+
+		int action = actions[index];
+		return isPickup(action) ? tasks.getPickupCity(getTaskIndex(action)) : tasks.getDeliveryCity(~action);
+	}
+
+	/**
+	 * Same as getCityId but returns the city itself, or null past the end of the plan
+	 */
+	public City getCity(int index) {
+		int id = getCityId(index);
+		return id < 0 ? null : tasks.topology.getCity(id);
+	}
+
+	public TaskTable getTasks() {
+		return tasks;
+	}
+
+	/**
+	 * Load right after the `index`-th action; -1 denotes the start of the plan
+	 */
+	public int getLoad(int index) {
+		return index < 0 ? 0 : loads[index];
+	}
+
+	/**
+	 * Weight difference implied by the `index`-th action
+	 */
+	public int getDifferentialWeight(int index) {
+		return getLoad(index) - getLoad(index - 1);
+	}
+
+	public double getCost() {
+		return actions.length == 0 ? 0 : costs[actions.length - 1];
+	}
+
+	/**
+	 * Index of the given encoded action, or -1 if it is not part of this plan
+	 */
+	public int indexOf(int action) {
+		for (int i = 0; i < actions.length; ++i) {
+			if (actions[i] == action)
+				return i;
+		}
+		return -1;
+	}
+
+	/* Modifiers; they all build a new plan */
+
+	/**
+	 * Move the action at index `sourceIndex` such that it ends up at index `destinationIndex`
+	 */
+	public VehiclePlan shift(int sourceIndex, int destinationIndex) {
+		int[] newActions = actions.clone();
+		int action = actions[sourceIndex];
+
+		// Shift the actions in between by one slot
+		if (sourceIndex < destinationIndex) {
+			int length = destinationIndex - sourceIndex;
+			System.arraycopy(actions, sourceIndex + 1, newActions, sourceIndex, length);
+		} else {
+			int length = sourceIndex - destinationIndex;
+			System.arraycopy(actions, destinationIndex, newActions, destinationIndex + 1, length);
+		}
+		newActions[destinationIndex] = action;
+
+		return new VehiclePlan(vehicle, tasks, newActions);
+	}
+
+	/**
+	 * Remove both actions of the given task
+	 */
+	public VehiclePlan remove(int taskIndex) {
+		int[] newActions = new int[actions.length - 2];
+		int j = 0;
+		for (int action : actions) {
+			if (getTaskIndex(action) != taskIndex)
+				newActions[j++] = action;
+		}
+
+		assert j == newActions.length;
+		return new VehiclePlan(vehicle, tasks, newActions);
+	}
+
+	/**
+	 * Remove both actions of every task flagged in `removed` (indexed like the task table); return this plan if none
+	 * of them is part of it
+	 */
+	public VehiclePlan removeAll(boolean[] removed) {
+		int count = 0;
+		for (int action : actions) {
+			if (removed[getTaskIndex(action)])
+				++count;
+		}
+		if (count == 0)
+			return this;
+
+		int[] newActions = new int[actions.length - count];
+		int j = 0;
+		for (int action : actions) {
+			if (!removed[getTaskIndex(action)])
+				newActions[j++] = action;
+		}
+
+		return new VehiclePlan(vehicle, tasks, newActions);
+	}
+
+	/**
+	 * Insert the given task such that its pickup and delivery actions end up at the given indices in the new plan
+	 */
+	public VehiclePlan insert(int taskIndex, int pickupIndex, int deliveryIndex) {
+		assert pickupIndex < deliveryIndex;
+
+		int[] newActions = new int[actions.length + 2];
+		for (int i = 0, j = 0; i < newActions.length; ++i) {
+			if (i == pickupIndex)
+				newActions[i] = pickup(taskIndex);
+			else if (i == deliveryIndex)
+				newActions[i] = delivery(taskIndex);
+			else
+				newActions[i] = actions[j++];
+		}
+
+		return new VehiclePlan(vehicle, tasks, newActions);
+	}
+
+	/**
+	 * Build the same plan with a (bigger) task table
+	 */
+	public VehiclePlan withTasks(TaskTable extendedTasks) {
+		return new VehiclePlan(vehicle, extendedTasks, actions);
+	}
+
+	/**
+	 * Logist will prevent us from keeping Task objects around between two rounds... We have to convert "old" instanced
+	 * to new ones using their id.
+	 */
+	public Plan convertToLogistPlan(Map<Integer, Task> tasksConverter) {
+		City currentCity = vehicle.getCurrentCity();
+		Plan logistPlan = new Plan(currentCity);
+
+		for (int i = 0; i < actions.length; ++i) {
+			// Get the corresponding valid task
+			Task currentTask = tasksConverter.get(getTaskAt(i).id);
+			City nextCity = getCity(i);
+
+			// move to pickup/delivery location
+			tasks.topology.appendPath(logistPlan, currentCity, nextCity);
+
+			// & pick it up or deliver it
+			if (isPickupAt(i))
+				logistPlan.appendPickup(currentTask);
+			else
+				logistPlan.appendDelivery(currentTask);
+
+			currentCity = nextCity;
+		}
+
+		return logistPlan;
+	}
+
+	@Override
+	public String toString() {
+		return "Plan for vehicle n° " + vehicle.id() + ": " + Arrays.toString(actions);
+	}
+}
@@ -1,5 +1,7 @@
 package strategy;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import logist.task.Task;
 import planner.GeneralPlan;
 import planner.PlannerTrait;
@@ -18,6 +20,10 @@ public class Strategy {
 	private Long totalReward = 0l;
 	private int winCount = 0;
 
+	// Background optimization between two callbacks of the agent; see startImproving
+	private Thread improver = null;
+	private AtomicBoolean stopImprover = null;
+
 	public final String name;
 
 	public Strategy(String name, PlannerTrait planner, CostEstimatorTrait estimator, BidStrategyTrait bidder) {
@@ -28,6 +34,8 @@ public class Strategy {
 	}
 
 	public Long bid(Task task, long timeoutBid) {
+		stopImproving();
+
 		currentTask = task;
 		System.out.println(name + " is bidding...");
 
@@ -40,10 +48,16 @@ public class Strategy {
 			// everything should be cached so this won't harm performance
 			System.out.println("next planner has cost: " + result.planner.generatePlans(100).computeCost());
 		}
+
+		// Until the result is known, speculate that we win the task
+		startImproving(nextPlanner != null ? nextPlanner : planner);
+
 		return bid;
 	}
 
 	public void validateBid(int winner, Long[] lastOffers) {
+		stopImproving();
+
 		final boolean won = winner == bidder.agentID;
 		if (won) {
 			planner = nextPlanner != null ? nextPlanner : planner.extendPlan(currentTask);
@@ -59,9 +73,13 @@ public class Strategy {
 
 		System.out.print(name + " bid " + lastOffers[bidder.agentID] + " for n° " + bidCount + " and ");
 		System.out.println((won ? "won" : "lost") + " [total = " + winCount + "]");
+
+		startImproving(planner);
 	}
 
 	public GeneralPlan generatePlans(long timeoutPlan) {
+		stopImproving();
+
 		System.out.println("Generating plan for " + name);
 
 		GeneralPlan plan = planner.generateFinalPlans(timeoutPlan);
@@ -78,4 +96,41 @@ public class Strategy {
 
 		return plan;
 	}
+
+	/**
+	 * Improve the given planner in a background thread until stopImproving is called. The planner must not be used in
+	 * the meantime.
+	 */
+	private void startImproving(final PlannerTrait target) {
+		final AtomicBoolean stop = new AtomicBoolean(false);
+
+		improver = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				target.improve(stop);
+			}
+		}, name + " improver");
+		improver.setDaemon(true); // don't prevent the simulation from exiting
+		stopImprover = stop;
+		improver.start();
+	}
+
+	/**
+	 * Cooperatively stop the background optimization, if any, and wait for it so that the planners can be used again
+	 */
+	private void stopImproving() {
+		if (improver == null)
+			return;
+
+		stopImprover.set(true);
+		try {
+			improver.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while stopping the background optimization", e);
+		}
+
+		improver = null;
+		stopImprover = null;
+	}
 }
@@ -2,45 +2,87 @@ package strategy;
 
 import logist.agent.Agent;
 import logist.task.TaskDistribution;
+import logist.topology.Topology;
+import planner.LNSPlanner;
 import planner.NaivePlanner;
 import planner.SLSPlanner;
+import utils.TopologyIndex;
 import bidder.NoGain;
 import bidder.NoPainMinOfBest;
+import estimator.CheapestInsertion;
 import estimator.Oracle;
 import estimator.NaiveEstimator;
 import estimator.NoFuture;
 
 public class StrategyFactory {
 
-	public static Strategy naive(Agent agent) {
-		return new Strategy("Naive", new NaivePlanner(agent.vehicles()), new NaiveEstimator(), new NoGain(agent.id()));
+	public static Strategy naive(Agent agent, Topology topology) {
+		TopologyIndex index = new TopologyIndex(topology);
+
+		return new Strategy("Naive", new NaivePlanner(agent.vehicles(), index), new NaiveEstimator(),
+				new NoGain(agent.id()));
 	}
 
-	public static Strategy simple(Agent agent) {
-		return new Strategy("Simple", new SLSPlanner(agent.vehicles(), SLSPlanner.NORMAL_SETTIGNS,
-				SLSPlanner.OPTIMAL_SETTINGS), new NoFuture(), new NoGain(agent.id()));
+	public static Strategy simple(Agent agent, Topology topology) {
+		TopologyIndex index = new TopologyIndex(topology);
+
+		int workers = availableWorkers();
+
+		return new Strategy("Simple", new SLSPlanner(agent.vehicles(), index, SLSPlanner.NORMAL_SETTIGNS
+				.parallel(workers), SLSPlanner.OPTIMAL_SETTINGS.parallel(workers)), new NoFuture(), new NoGain(
+				agent.id()));
 	}
 
-	public static Strategy safeGambler(Agent agent) {
+	public static Strategy safeGambler(Agent agent, Topology topology) {
 		double marginRatio = 0.5;
 		int depth = 5;
 
-		return new Strategy("Safe Gambler", new SLSPlanner(agent.vehicles(), SLSPlanner.NORMAL_SETTIGNS,
-				SLSPlanner.OPTIMAL_SETTINGS), new NoFuture(), new NoPainMinOfBest(agent.id(), marginRatio, depth));
+		TopologyIndex index = new TopologyIndex(topology);
+		int workers = availableWorkers();
+
+		return new Strategy("Safe Gambler", new SLSPlanner(agent.vehicles(), index, SLSPlanner.NORMAL_SETTIGNS
+				.parallel(workers), SLSPlanner.OPTIMAL_SETTINGS.parallel(workers)), new NoFuture(),
+				new NoPainMinOfBest(agent.id(), marginRatio, depth));
+	}
+
+	public static Strategy quick(Agent agent, Topology topology) {
+		double polishRatio = 0.5;
+
+		TopologyIndex index = new TopologyIndex(topology);
+		int workers = availableWorkers();
+
+		return new Strategy("Quick", new SLSPlanner(agent.vehicles(), index, SLSPlanner.NORMAL_SETTIGNS
+				.parallel(workers), SLSPlanner.OPTIMAL_SETTINGS.parallel(workers)), new CheapestInsertion(polishRatio),
+				new NoGain(agent.id()));
+	}
+
+	public static Strategy lns(Agent agent, Topology topology) {
+		TopologyIndex index = new TopologyIndex(topology);
+
+		return new Strategy("LNS", new LNSPlanner(agent.vehicles(), index, LNSPlanner.NORMAL_SETTINGS,
+				LNSPlanner.OPTIMAL_SETTINGS), new NoFuture(), new NoGain(agent.id()));
 	}
 
-	public static Strategy gipsy(Agent agent, TaskDistribution distribution) {
+	public static Strategy gipsy(Agent agent, Topology topology, TaskDistribution distribution) {
+		int workers = availableWorkers();
+
 		int minTasks = 5;
-		int nbPredictions = 10;
+		int nbPredictions = 10 * workers; // the predictions are computed in parallel
 		double riskTolerance = 0.7;
 
 		double marginRatio = 0.5;
 		int depth = 5;
 
-		return new Strategy("Gipsy", new SLSPlanner(agent.vehicles(), SLSPlanner.FAST_SETTIGNS,
+		TopologyIndex index = new TopologyIndex(topology);
 
-		SLSPlanner.OPTIMAL_SETTINGS), new Oracle(minTasks, nbPredictions, riskTolerance, distribution),
-				new NoPainMinOfBest(agent.id(), marginRatio, depth));
+		// The fast settings stay sequential: the oracle already runs many short searches per bid
+		return new Strategy("Gipsy", new SLSPlanner(agent.vehicles(), index, SLSPlanner.FAST_SETTIGNS,
+				SLSPlanner.OPTIMAL_SETTINGS.parallel(workers)), new Oracle(minTasks, nbPredictions, riskTolerance,
+				distribution, workers), new NoPainMinOfBest(agent.id(), marginRatio, depth));
+	}
+
+	private static int availableWorkers() {
+		return Runtime.getRuntime().availableProcessors();
 	}
 
 	private StrategyFactory() {
@@ -0,0 +1,81 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import logist.plan.Plan;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+
+/**
+ * Dense view of a topology, built once: cities are identified by their id (logist guarantees they are in [0, size)),
+ * and the distance and the next hop on the shortest path are precomputed for every pair of cities.
+ *
+ * This avoids the cost of City.distanceTo and City.pathTo (which rebuilds the path recursively) in the planners.
+ */
+public final class TopologyIndex {
+
+	public final int size;
+
+	private final City[] cities;
+	private final double[] distances; // distance in km from `i` to `j` is at index i * size + j
+	private final int[] nextHops; // id of the city following `i` on the path to `j` (or `j` itself if i == j)
+
+	public TopologyIndex(Topology topology) {
+		size = topology.size();
+		cities = new City[size];
+		distances = new double[size * size];
+		nextHops = new int[size * size];
+
+		for (City city : topology) {
+			cities[city.id] = city;
+		}
+
+		for (City from : cities) {
+			for (City to : cities) {
+				int index = from.id * size + to.id;
+				distances[index] = from.distanceTo(to);
+				nextHops[index] = from.equals(to) ? to.id : from.pathTo(to).get(0).id;
+			}
+		}
+	}
+
+	public City getCity(int id) {
+		return cities[id];
+	}
+
+	public double distance(int from, int to) {
+		return distances[from * size + to];
+	}
+
+	public double distance(City from, City to) {
+		return distances[from.id * size + to.id];
+	}
+
+	/**
+	 * First city after `from` on the shortest path toward `to`; `to` itself if they are the same
+	 */
+	public City nextHop(City from, City to) {
+		return cities[nextHops[from.id * size + to.id]];
+	}
+
+	/**
+	 * Same as City.pathTo: the first city is excluded but the last one is included
+	 */
+	public List<City> pathTo(City from, City to) {
+		List<City> path = new ArrayList<>();
+		for (int current = from.id; current != to.id; current = nextHops[current * size + to.id]) {
+			path.add(cities[nextHops[current * size + to.id]]);
+		}
+		return path;
+	}
+
+	/**
+	 * Append the moves from `from` to `to` to the given plan
+	 */
+	public void appendPath(Plan plan, City from, City to) {
+		for (int current = from.id; current != to.id; current = nextHops[current * size + to.id]) {
+			plan.appendMove(cities[nextHops[current * size + to.id]]);
+		}
+	}
+}
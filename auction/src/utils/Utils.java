@@ -22,6 +22,10 @@ public final class Utils {
 	}
 
 	public static <E> E getRandomElement(List<E> list) {
+		return getRandomElement(list, random);
+	}
+
+	public static <E> E getRandomElement(List<E> list, Random random) {
 		ensure(list.size() > 0, "selectRandom needs at least one plan");
 
 		int index = random.nextInt(list.size());
@@ -2,7 +2,15 @@ package template;
 
 //the list of imports
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 
 import logist.LogistSettings;
 import logist.agent.Agent;
@@ -24,11 +32,14 @@ public class CentralizedTemplate implements CentralizedBehavior {
 
 	private long timeoutPlan;
 
+	// Precomputed distances & paths of the topology
+	private TopologyIndex topology;
+
 	/*
 	 * Type of possible algorithm
 	 */
 	enum Algorithm {
-		NAIVE, SLS, SLS_RANDOM_INITIAL
+		NAIVE, SLS, SLS_RANDOM_INITIAL, SIMULATED_ANNEALING, TABU, GENETIC, LNS
 	}
 
 	/**
@@ -42,13 +53,34 @@ public class CentralizedTemplate implements CentralizedBehavior {
 	double p;
 
 	/**
-	 * Population size for SLS-genetic algorithm
+	 * Population size for the genetic algorithm
 	 */
 	int geneticPopulationSize;
 
+	/**
+	 * Number of threads building and evaluating the offspring of the genetic algorithm
+	 */
+	int threads;
+
 	int bound;
 	int stallBound;
 
+	/**
+	 * Number of recently moved tasks that cannot be moved again, for the tabu search
+	 */
+	int tabuTenure;
+
+	/**
+	 * Largest fraction of the tasks removed by one step of the large neighborhood search
+	 */
+	double removedRatio;
+
+	// For simulated annealing, the final temperature relative to the initial one
+	private static final double FINAL_TEMPERATURE_RATIO = 1e-3;
+
+	// For the large neighborhood search, the initial temperature relative to the average cost per task
+	private static final double LNS_TEMPERATURE_RATIO = 0.1;
+
 	@Override
 	public void setup(Topology topology, TaskDistribution distribution, Agent agent) {
 
@@ -67,14 +99,22 @@ public class CentralizedTemplate implements CentralizedBehavior {
 		// The plan method cannot execute more than timeout_plan milliseconds
 		timeoutPlan = ls.get(LogistSettings.TimeoutKey.PLAN);
 
+		this.topology = new TopologyIndex(topology);
+
 		String algorithmName = agent.readProperty("algorithm", String.class, "NAIVE");
 		algorithm = Algorithm.valueOf(algorithmName.toUpperCase());
 		bound = agent.readProperty("bound", Integer.class, 10000);
 		stallBound = agent.readProperty("stall", Integer.class, 100);
+		tabuTenure = agent.readProperty("tabuTenure", Integer.class, 10);
+		removedRatio = agent.readProperty("removedRatio", Double.class, 0.3);
+		Utils.ensure(removedRatio > 0 && removedRatio <= 1, "the removed ratio is a fraction of the tasks");
 
 		p = agent.readProperty("probability", Double.class, 0.5);
 
 		geneticPopulationSize = agent.readProperty("populationSize", Integer.class, 10);
+		threads = agent.readProperty("threads", Integer.class, Runtime.getRuntime().availableProcessors());
+		Utils.ensure(geneticPopulationSize >= 2, "the population needs at least two plans");
+		Utils.ensure(threads >= 1, "at least one thread is required");
 	}
 
 	@Override
@@ -97,6 +137,22 @@ public class CentralizedTemplate implements CentralizedBehavior {
 			plans = slsPlans(true, startTime, vehicles, tasks);
 			break;
 
+		case SIMULATED_ANNEALING:
+			plans = annealingPlans(startTime, vehicles, tasks);
+			break;
+
+		case TABU:
+			plans = tabuPlans(startTime, vehicles, tasks);
+			break;
+
+		case GENETIC:
+			plans = geneticPlans(startTime, vehicles, tasks);
+			break;
+
+		case LNS:
+			plans = lnsPlans(startTime, vehicles, tasks);
+			break;
+
 		default:
 			throw new AssertionError("Should not happen.");
 		}
@@ -123,19 +179,19 @@ public class CentralizedTemplate implements CentralizedBehavior {
 
 		GeneralPlan generalPlans;
 		if (randomInitial)
-			generalPlans = GeneralPlan.generateRandomInitial(vehicles, tasks);
+			generalPlans = GeneralPlan.generateRandomInitial(vehicles, tasks, topology);
 		else
-			generalPlans = GeneralPlan.generateInitial(vehicles, tasks);
+			generalPlans = GeneralPlan.generateInitial(vehicles, tasks, topology);
+
+		DeadlineController deadline = createDeadline(startTime, generalPlans);
 
 		System.out.println("Generate Neighbours");
 
 		GeneralPlan bestSoFar = generalPlans;
 
-		int iterationCount = 0;
 		int stallCount = 0;
 
 		do {
-			++iterationCount;
 			// Aold ← A
 			// no need for that
 
@@ -163,16 +219,18 @@ public class CentralizedTemplate implements CentralizedBehavior {
 			if (stallCount >= stallBound) {
 				// Reset!
 				if (randomInitial)
-					generalPlans = GeneralPlan.generateRandomInitial(vehicles, tasks);
+					generalPlans = GeneralPlan.generateRandomInitial(vehicles, tasks, topology);
 				else
-					generalPlans = GeneralPlan.generateInitial(vehicles, tasks);
+					generalPlans = GeneralPlan.generateInitial(vehicles, tasks, topology);
 
 				stallCount = 0;
 				bestSoFar = Utils.selectBest(generalPlans, bestSoFar);
 
 				System.out.println("plans were reset");
 			}
-		} while (iterationCount < bound && !hasPlanTimedOut(startTime));
+		} while (!deadline.iterationDone() && deadline.getIterations() < bound);
+
+		logIterations("SLS", deadline);
 
 		// Convert solution to logist plans format
 		List<Plan> logistPlans = bestSoFar.convertToLogistPlans();
@@ -180,14 +238,238 @@ public class CentralizedTemplate implements CentralizedBehavior {
 		return logistPlans;
 	}
 
-	private boolean hasPlanTimedOut(long startTime) {
-		long currentTime = System.currentTimeMillis();
-		long duration = currentTime - startTime;
+	// Build plans using simulated annealing: a random neighbor replaces the current plan if it is cheaper, or with
+	// probability exp(-delta / temperature) otherwise; the temperature decreases geometrically over the planning time
+	private List<Plan> annealingPlans(long startTime, List<Vehicle> vehicles, TaskSet tasks) {
+		GeneralPlan current = GeneralPlan.generateInitial(vehicles, tasks, topology);
+		if (tasks.isEmpty())
+			return current.convertToLogistPlans(); // there is no neighbor to explore
+
+		DeadlineController deadline = createDeadline(startTime, current);
+
+		// Start with a temperature at which an average uphill move is accepted with probability 1/2
+		double initialTemperature = Math.max(1, averageUphill(current, current.generateNeighbors()) / Math.log(2));
+		double finalTemperature = initialTemperature * FINAL_TEMPERATURE_RATIO;
+
+		GeneralPlan bestSoFar = current;
+
+		do {
+			List<GeneralPlan> neighbors = current.generateNeighbors();
+			if (neighbors.isEmpty())
+				continue;
+
+			// Cool down with the time (or the iterations, if they are the limit)
+			double progress = Math.max(deadline.getProgress(), (double) deadline.getIterations() / bound);
+			double temperature = initialTemperature * Math.pow(finalTemperature / initialTemperature, progress);
+
+			GeneralPlan candidate = Utils.getRandomElement(neighbors);
+			double delta = candidate.computeOverallCost() - current.computeOverallCost();
+			if (delta <= 0 || Utils.random.nextDouble() < Math.exp(-delta / temperature))
+				current = candidate;
+
+			bestSoFar = Utils.selectBest(current, bestSoFar);
+		} while (!deadline.iterationDone() && deadline.getIterations() < bound);
+
+		logIterations("Simulated annealing", deadline);
+
+		return bestSoFar.convertToLogistPlans();
+	}
+
+	// Average cost increase among the neighbors that are more expensive than `plan`
+	private double averageUphill(GeneralPlan plan, List<GeneralPlan> neighbors) {
+		double sum = 0;
+		int count = 0;
+		for (GeneralPlan neighbor : neighbors) {
+			double delta = neighbor.computeOverallCost() - plan.computeOverallCost();
+			if (delta > 0) {
+				sum += delta;
+				++count;
+			}
+		}
+		return count == 0 ? 0 : sum / count;
+	}
+
+	// Build plans using a tabu search: move to the best neighbor, even if it is more expensive, as long as its moved
+	// task was not moved recently (unless it beats the best plan so far). It starts from a random plan: only the
+	// first task of a vehicle can move to another one, which a best-move search would rarely do from the naive plan
+	private List<Plan> tabuPlans(long startTime, List<Vehicle> vehicles, TaskSet tasks) {
+		GeneralPlan current = GeneralPlan.generateRandomInitial(vehicles, tasks, topology);
+		if (tasks.isEmpty())
+			return current.convertToLogistPlans(); // there is no neighbor to explore
 
-		// Increase duration by 10% to account for next iteration + plan conversion
-		duration *= 1.1;
+		DeadlineController deadline = createDeadline(startTime, current);
 
-		return duration > timeoutPlan;
+		TabuList tabu = new TabuList(Math.max(1, Math.min(tabuTenure, tasks.size() - 1)));
+		GeneralPlan bestSoFar = current;
+
+		do {
+			GeneralPlan bestAllowed = null;
+			GeneralPlan bestNeighbor = null;
+			for (GeneralPlan neighbor : current.generateNeighbors()) {
+				double cost = neighbor.computeOverallCost();
+				if (cost == current.computeOverallCost())
+					continue; // Such moves (e.g. swapping two actions in the same city) would keep us on a plateau
+
+				if (bestNeighbor == null || cost < bestNeighbor.computeOverallCost())
+					bestNeighbor = neighbor;
+
+				boolean allowed = !tabu.contains(neighbor.movedTask.id) || cost < bestSoFar.computeOverallCost();
+				if (allowed && (bestAllowed == null || cost < bestAllowed.computeOverallCost()))
+					bestAllowed = neighbor;
+			}
+
+			if (bestNeighbor == null)
+				continue; // no useful neighbor at all
+
+			// If everything is tabu, take the best move anyway
+			current = bestAllowed != null ? bestAllowed : bestNeighbor;
+			tabu.add(current.movedTask.id);
+
+			bestSoFar = Utils.selectBest(current, bestSoFar);
+		} while (!deadline.iterationDone() && deadline.getIterations() < bound);
+
+		logIterations("Tabu search", deadline);
+
+		return bestSoFar.convertToLogistPlans();
+	}
+
+	// Build plans using a genetic algorithm: each generation creates as many children as there are plans, from
+	// parents selected by tournament, by crossover (see GeneralPlan.crossover) and mutation with a neighbor. The
+	// children are built and evaluated in parallel; the best plans among the parents and the children survive.
+	private List<Plan> geneticPlans(long startTime, final List<Vehicle> vehicles, final TaskSet tasks) {
+		final GeneralPlan[] population = new GeneralPlan[geneticPopulationSize];
+		population[0] = GeneralPlan.generateInitial(vehicles, tasks, topology);
+		for (int i = 1; i < population.length; ++i) {
+			population[i] = GeneralPlan.generateRandomInitial(vehicles, tasks, topology);
+		}
+		if (tasks.isEmpty())
+			return population[0].convertToLogistPlans(); // there is no neighbor to mutate into
+
+		DeadlineController deadline = createDeadline(startTime, population[0]);
+		ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+
+		// Children of the current generation, one task per child
+		List<Callable<GeneralPlan>> offspring = new ArrayList<>(population.length);
+		for (int i = 0; i < population.length; ++i) {
+			offspring.add(new Callable<GeneralPlan>() {
+				@Override
+				public GeneralPlan call() {
+					Random random = ThreadLocalRandom.current();
+					GeneralPlan child = GeneralPlan.crossover(selectByTournament(population, random),
+							selectByTournament(population, random), random);
+
+					// Mutation: like an SLS step, a random neighbor with probability p, the best one otherwise
+					List<GeneralPlan> neighbors = child.generateNeighbors();
+					if (!neighbors.isEmpty()) {
+						if (random.nextDouble() > p)
+							child = Utils.selectBest(null, neighbors);
+						else
+							child = neighbors.get(random.nextInt(neighbors.size()));
+					}
+
+					child.computeOverallCost(); // fitness
+					return child;
+				}
+			});
+		}
+
+		try {
+			do {
+				List<GeneralPlan> generation = new ArrayList<>(population.length + offspring.size());
+				generation.addAll(Arrays.asList(population));
+				if (pool == null) {
+					for (Callable<GeneralPlan> child : offspring) {
+						generation.add(child.call());
+					}
+				} else {
+					for (Future<GeneralPlan> child : pool.invokeAll(offspring)) {
+						generation.add(child.get());
+					}
+				}
+
+				// Survivors; the costs are known, so sorting is cheap
+				Collections.sort(generation, new Comparator<GeneralPlan>() {
+					@Override
+					public int compare(GeneralPlan a, GeneralPlan b) {
+						return Double.compare(a.computeOverallCost(), b.computeOverallCost());
+					}
+				});
+				for (int i = 0; i < population.length; ++i) {
+					population[i] = generation.get(i);
+				}
+			} while (!deadline.iterationDone() && deadline.getIterations() < bound);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while running the genetic algorithm", e);
+		} catch (Exception e) {
+			throw new RuntimeException("The genetic algorithm failed", e);
+		} finally {
+			if (pool != null)
+				pool.shutdown();
+		}
+
+		logIterations("Genetic algorithm", deadline);
+
+		return population[0].convertToLogistPlans();
+	}
+
+	// The best of two random plans of the population
+	private static GeneralPlan selectByTournament(GeneralPlan[] population, Random random) {
+		GeneralPlan first = population[random.nextInt(population.length)];
+		GeneralPlan second = population[random.nextInt(population.length)];
+		return Utils.selectBest(first, second);
+	}
+
+	// Build plans using a large neighborhood search: the plan is ruined and recreated (see RuinAndRecreate) and the
+	// new plan is accepted as in simulated annealing. It starts from a plan built by regret insertion.
+	private List<Plan> lnsPlans(long startTime, List<Vehicle> vehicles, TaskSet tasks) {
+		GeneralPlan initial = GeneralPlan.generateInitial(vehicles, tasks, topology);
+		if (tasks.isEmpty())
+			return initial.convertToLogistPlans();
+
+		int maxRemoved = Math.max(1, (int) (removedRatio * tasks.size()));
+		RuinAndRecreate neighborhood = new RuinAndRecreate(topology, Utils.random, maxRemoved);
+
+		GeneralPlan current = neighborhood.rebuild(initial);
+		DeadlineController deadline = createDeadline(startTime, current);
+
+		double initialTemperature = LNS_TEMPERATURE_RATIO * current.computeOverallCost() / tasks.size();
+		GeneralPlan bestSoFar = current;
+
+		do {
+			// Cool down with the time (or the iterations, if they are the limit)
+			double progress = Math.max(deadline.getProgress(), (double) deadline.getIterations() / bound);
+			double temperature = initialTemperature * Math.pow(FINAL_TEMPERATURE_RATIO, progress);
+
+			GeneralPlan candidate = neighborhood.neighbor(current);
+			double delta = candidate.computeOverallCost() - current.computeOverallCost();
+			if (delta <= 0 || (temperature > 0 && Utils.random.nextDouble() < Math.exp(-delta / temperature)))
+				current = candidate;
+
+			bestSoFar = Utils.selectBest(current, bestSoFar);
+		} while (!deadline.iterationDone() && deadline.getIterations() < bound);
+
+		logIterations("Large neighborhood search", deadline);
+
+		return bestSoFar.convertToLogistPlans();
+	}
+
+	/**
+	 * Stop in time, keeping enough time to convert the best plan; a conversion of the initial plan gives an estimate
+	 * of how long it takes
+	 */
+	private DeadlineController createDeadline(long startTime, GeneralPlan initial) {
+		DeadlineController deadline = new DeadlineController(timeoutPlan - (System.currentTimeMillis() - startTime));
+		long conversionStart = System.nanoTime();
+		initial.convertToLogistPlans();
+		deadline.setConversionTime(System.nanoTime() - conversionStart);
+		return deadline;
+	}
+
+	private void logIterations(String name, DeadlineController deadline) {
+		System.out.println(name + ": " + deadline.getIterations() + " iterations in "
+				+ (long) deadline.getElapsedMillis() + "ms (" + (long) deadline.getIterationsPerSecond()
+				+ " iterations/s)");
 	}
 
 	private List<Plan> naivePlans(List<Vehicle> vehicles, TaskSet tasks) {
@@ -209,16 +491,12 @@ public class CentralizedTemplate implements CentralizedBehavior {
 
 		for (Task task : tasks) {
 			// move: current city => pickup location
-			for (City city : current.pathTo(task.pickupCity)) {
-				plan.appendMove(city);
-			}
+			topology.appendPath(plan, current, task.pickupCity);
 
 			plan.appendPickup(task);
 
 			// move: pickup location => delivery location
-			for (City city : task.path()) {
-				plan.appendMove(city);
-			}
+			topology.appendPath(plan, task.pickupCity, task.deliveryCity);
 
 			plan.appendDelivery(task);
 
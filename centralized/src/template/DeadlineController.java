@@ -0,0 +1,91 @@
+package template;
+
+/**
+ * Decide when an iterative search has to stop to meet a deadline, while leaving enough time to convert the result.
+ *
+ * The clock (System.nanoTime) is only read every `checkInterval` iterations; the interval adapts to the measured
+ * (moving average) duration of an iteration so that the clock is read about once per CHECK_PERIOD. The search stops
+ * when the remaining time could not cover the next batch of iterations and the conversion, with some margin.
+ */
+final class DeadlineController {
+
+	private static final long CHECK_PERIOD = 1_000_000; // 1ms, in ns
+	private static final int MAX_CHECK_INTERVAL = 1 << 16;
+	private static final double SMOOTHING = 0.2; // weight of the last measure in the moving average
+	private static final long SAFETY_MARGIN = 50_000_000; // 50ms, in ns; for the rest of the plan method
+
+	private final long startTime; // ns
+	private final long deadline; // ns
+
+	private long conversionTime = 0; // estimated cost of the result conversion, in ns
+	private double iterationTime = -1; // moving average, in ns
+
+	private long iterations = 0;
+	private int checkInterval = 1;
+	private long lastCheckTime;
+	private long lastCheckIterations = 0;
+	private boolean stopped = false;
+
+	/**
+	 * The deadline is given as a budget in milliseconds from now
+	 */
+	DeadlineController(long budget) {
+		this.startTime = System.nanoTime();
+		this.deadline = startTime + budget * 1_000_000;
+		this.lastCheckTime = startTime;
+	}
+
+	/**
+	 * Time, in ns, needed to convert the result once the search is over
+	 */
+	void setConversionTime(long conversionTime) {
+		this.conversionTime = conversionTime;
+	}
+
+	/**
+	 * To be called after each iteration; return true when the search should stop
+	 */
+	boolean iterationDone() {
+		++iterations;
+		if (stopped)
+			return true;
+		if (iterations - lastCheckIterations < checkInterval)
+			return false;
+
+		long now = System.nanoTime();
+		double measure = (double) (now - lastCheckTime) / (iterations - lastCheckIterations);
+		iterationTime = iterationTime < 0 ? measure : SMOOTHING * measure + (1 - SMOOTHING) * iterationTime;
+		lastCheckTime = now;
+		lastCheckIterations = iterations;
+
+		checkInterval = (int) Math.max(1, Math.min(MAX_CHECK_INTERVAL, CHECK_PERIOD / Math.max(1, iterationTime)));
+
+		// The next check comes after `checkInterval` more iterations; they might be twice slower than the average
+		double needed = 2 * checkInterval * iterationTime + 2 * conversionTime + SAFETY_MARGIN;
+		stopped = now + needed >= deadline;
+		return stopped;
+	}
+
+	/**
+	 * Fraction of the time budget used, as of the last clock reading
+	 */
+	double getProgress() {
+		return Math.min(1, (double) (lastCheckTime - startTime) / (deadline - startTime));
+	}
+
+	long getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * Elapsed time since the controller was created, in ms
+	 */
+	double getElapsedMillis() {
+		return (System.nanoTime() - startTime) / 1e6;
+	}
+
+	double getIterationsPerSecond() {
+		long elapsed = System.nanoTime() - startTime;
+		return elapsed == 0 ? 0 : iterations * 1e9 / elapsed;
+	}
+}
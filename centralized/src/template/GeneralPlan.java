@@ -2,10 +2,12 @@ package template;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 
 import logist.plan.Plan;
 import logist.simulation.Vehicle;
@@ -16,24 +18,33 @@ import template.VehicleAction.Event;
 
 public class GeneralPlan {
 
-	private final Map<Vehicle, List<VehicleAction>> plans; // One plan per vehicle
+	private final VehiclePlan[] plans; // One plan per vehicle, in the same order as `vehicles`
+
+	// Task whose action(s) were moved to obtain this plan from the one that generated it; null for initial plans
+	final Task movedTask;
 
 	// Keep track of those for validation purposes
 	private final List<Vehicle> vehicles;
 	private final TaskSet tasks;
 
+	// Precomputed distances & paths
+	private final TopologyIndex topology;
+
 	private final Random randomGenerator = new Random();
 
-	private double overallCostCache = -1;
+	private volatile double overallCostCache = -1; // plans can be costed from several threads
 
 	/**
 	 * Private constructor; use generateInitial of generateRandomInitial static factories to build the first plan, then
 	 * use generateNeighbors to navigate onto the plan space.
 	 */
-	private GeneralPlan(Map<Vehicle, List<VehicleAction>> plans, List<Vehicle> vehicles, TaskSet tasks) {
+	private GeneralPlan(VehiclePlan[] plans, List<Vehicle> vehicles, TaskSet tasks, TopologyIndex topology,
+			Task movedTask) {
 		this.plans = plans;
+		this.movedTask = movedTask;
 		this.vehicles = vehicles;
 		this.tasks = tasks;
+		this.topology = topology;
 
 		// If needed, i.e. for debugging, enable this line:
 		// validateOrDie();
@@ -42,7 +53,7 @@ public class GeneralPlan {
 	/**
 	 * Generate the first, naive plan: all tasks are assigned to be biggest vehicle in a sequential order.
 	 */
-	public static GeneralPlan generateInitial(List<Vehicle> vehicles, TaskSet tasks) {
+	public static GeneralPlan generateInitial(List<Vehicle> vehicles, TaskSet tasks, TopologyIndex topology) {
 		assert vehicles.size() > 0;
 		Vehicle biggest = Utils.getBiggestVehicle(vehicles);
 		int heaviest = Utils.getHeaviestWeight(tasks);
@@ -61,21 +72,22 @@ public class GeneralPlan {
 		}
 
 		// Build vehicles' actions lists
-		Map<Vehicle, List<VehicleAction>> plans = new HashMap<>(vehicles.size());
-		for (Vehicle v : vehicles) {
+		VehiclePlan[] plans = new VehiclePlan[vehicles.size()];
+		for (int i = 0; i < plans.length; ++i) {
+			Vehicle v = vehicles.get(i);
 			if (v.equals(biggest))
-				plans.put(v, planForBiggest);
+				plans[i] = new VehiclePlan(v, planForBiggest, topology);
 			else
-				plans.put(v, new LinkedList<>());
+				plans[i] = new VehiclePlan(v, new LinkedList<VehicleAction>(), topology);
 		}
 
-		return new GeneralPlan(plans, vehicles, tasks);
+		return new GeneralPlan(plans, vehicles, tasks, topology, null);
 	}
 
 	/**
 	 * Randomly assign the task to different vehicles.
 	 */
-	public static GeneralPlan generateRandomInitial(List<Vehicle> vehicles, TaskSet tasks) {
+	public static GeneralPlan generateRandomInitial(List<Vehicle> vehicles, TaskSet tasks, TopologyIndex topology) {
 		assert vehicles.size() > 0;
 		Vehicle biggest = Utils.getBiggestVehicle(vehicles);
 		int heaviest = Utils.getHeaviestWeight(tasks);
@@ -84,26 +96,61 @@ public class GeneralPlan {
 			throw new RuntimeException("Impossible to plan: vehicles are not big enough");
 
 		// Build vehicles' actions lists
-		Map<Vehicle, List<VehicleAction>> plans = new HashMap<>(vehicles.size());
-		for (Vehicle v : vehicles) {
-			plans.put(v, new LinkedList<>());
+		List<List<VehicleAction>> actions = new ArrayList<>(vehicles.size());
+		for (int i = 0; i < vehicles.size(); ++i) {
+			actions.add(new LinkedList<VehicleAction>());
 		}
 
 		// Affect each task to a random vehicle
 		for (Task task : tasks) {
-			Vehicle vehicle;
+			int vehicle;
 			do {
-				vehicle = Utils.getRandomElement(vehicles);
-			} while (vehicle.capacity() < task.weight);
+				vehicle = Utils.random.nextInt(vehicles.size());
+			} while (vehicles.get(vehicle).capacity() < task.weight);
 
 			// move & pickup
-			plans.get(vehicle).add(new VehicleAction(Event.PICK, task));
+			actions.get(vehicle).add(new VehicleAction(Event.PICK, task));
 
 			// move & deliver
-			plans.get(vehicle).add(new VehicleAction(Event.DELIVER, task));
+			actions.get(vehicle).add(new VehicleAction(Event.DELIVER, task));
+		}
+
+		VehiclePlan[] plans = new VehiclePlan[vehicles.size()];
+		for (int i = 0; i < plans.length; ++i) {
+			plans[i] = new VehiclePlan(vehicles.get(i), actions.get(i), topology);
+		}
+
+		return new GeneralPlan(plans, vehicles, tasks, topology, null);
+	}
+
+	/**
+	 * Task-to-vehicle crossover: each task keeps the vehicle it has in one of the parents, chosen at random. The plan
+	 * of a vehicle is made of its actions in the first parent (for the tasks taken from it) followed by its actions in
+	 * the second parent; both parts are valid since they are part of a valid plan, and the vehicle is empty between
+	 * them.
+	 */
+	public static GeneralPlan crossover(GeneralPlan first, GeneralPlan second, Random random) {
+		Set<Task> fromFirst = new HashSet<>();
+		for (Task task : first.tasks) {
+			if (random.nextBoolean())
+				fromFirst.add(task);
+		}
+
+		VehiclePlan[] plans = new VehiclePlan[first.plans.length];
+		for (int i = 0; i < plans.length; ++i) {
+			List<VehicleAction> actions = new ArrayList<>();
+			for (VehicleAction action : first.plans[i].getActions()) {
+				if (fromFirst.contains(action.task))
+					actions.add(action);
+			}
+			for (VehicleAction action : second.plans[i].getActions()) {
+				if (!fromFirst.contains(action.task))
+					actions.add(action);
+			}
+			plans[i] = new VehiclePlan(first.vehicles.get(i), actions, first.topology);
 		}
 
-		return new GeneralPlan(plans, vehicles, tasks);
+		return new GeneralPlan(plans, first.vehicles, first.tasks, first.topology, null);
 	}
 
 	/**
@@ -129,11 +176,11 @@ public class GeneralPlan {
 		List<GeneralPlan> neighbours = new LinkedList<>();
 
 		// Apply strategies for a randomly selected, non-empty vehicle
-		Vehicle modelVehicle = selectRandomVehicle();
+		int modelVehicle = selectRandomVehicle();
 
 		neighbours.addAll(swapFirstTask(modelVehicle));
 
-		List<VehicleAction> modelPlan = plans.get(modelVehicle);
+		VehiclePlan modelPlan = plans[modelVehicle];
 		for (int i = 0; i < modelPlan.size(); ++i) {
 			VehicleAction action = modelPlan.get(i);
 			if (action.event == Event.PICK) {
@@ -148,54 +195,43 @@ public class GeneralPlan {
 		return neighbours;
 	}
 
-	private List<GeneralPlan> swapFirstTask(Vehicle sourceVehicle) {
-		Utils.ensure(plans.get(sourceVehicle).size() > 0, "swapFirstTask needs a vehicle with at least one task");
+	private List<GeneralPlan> swapFirstTask(int sourceVehicle) {
+		Utils.ensure(!plans[sourceVehicle].isEmpty(), "swapFirstTask needs a vehicle with at least one task");
 
 		List<GeneralPlan> neighbours = new LinkedList<>();
 
 		// Transfer the first task from the source vehicle to the other vehicles
-		List<VehicleAction> newSourcePlan = getCopyOfVehiclePlan(sourceVehicle);
-		Task transferedTask = newSourcePlan.get(0).task;
+		Task transferedTask = plans[sourceVehicle].get(0).task;
 
 		// Remove pickup & deliver actions from the source vehicle
-		newSourcePlan.remove(0);
-		for (int i = 0; i < newSourcePlan.size(); ++i) {
-			if (newSourcePlan.get(i).task.equals(transferedTask)) {
-				newSourcePlan.remove(i);
-				break;
-			}
-		}
+		VehiclePlan newSourcePlan = plans[sourceVehicle].withoutTask(transferedTask);
 
 		// Attempt to transfer the task to other vehicles
-		for (Vehicle destinationVehicle : vehicles) {
+		for (int destinationVehicle = 0; destinationVehicle < plans.length; ++destinationVehicle) {
 			// Skip the source vehicle
-			if (destinationVehicle.equals(sourceVehicle))
+			if (destinationVehicle == sourceVehicle)
 				continue;
 
 			// Skip small vehicle
-			if (destinationVehicle.capacity() < transferedTask.weight)
+			if (vehicles.get(destinationVehicle).capacity() < transferedTask.weight)
 				continue;
 
-			// Build new plan for destination vehicle
-			LinkedList<VehicleAction> newDestinationPlan = getCopyOfVehiclePlan(destinationVehicle);
-			newDestinationPlan.addFirst(new VehicleAction(Event.DELIVER, transferedTask));
-			newDestinationPlan.addFirst(new VehicleAction(Event.PICK, transferedTask));
-
-			// And combine everything together
-			Map<Vehicle, List<VehicleAction>> newPlans = getCopyOfPlans();
-			newPlans.put(sourceVehicle, newSourcePlan);
-			newPlans.put(destinationVehicle, newDestinationPlan);
-			GeneralPlan newGeneralPlan = new GeneralPlan(newPlans, vehicles, tasks);
+			// Build new plan for destination vehicle, and combine everything together; the other vehicles' plans
+			// are shared
+			VehiclePlan[] newPlans = plans.clone();
+			newPlans[sourceVehicle] = newSourcePlan;
+			newPlans[destinationVehicle] = plans[destinationVehicle].withTaskFirst(transferedTask);
+			GeneralPlan newGeneralPlan = new GeneralPlan(newPlans, vehicles, tasks, topology, transferedTask);
 			neighbours.add(newGeneralPlan);
 		}
 
 		return neighbours;
 	}
 
-	private List<GeneralPlan> advancePickUp(Vehicle vehicle, int actionIndex) {
-		Utils.ensure(plans.get(vehicle).size() > actionIndex, "advancePickUp needs a vehicle with at least "
+	private List<GeneralPlan> advancePickUp(int vehicle, int actionIndex) {
+		Utils.ensure(plans[vehicle].size() > actionIndex, "advancePickUp needs a vehicle with at least "
 				+ actionIndex + " events");
-		Utils.ensure(plans.get(vehicle).get(actionIndex).event == Event.PICK,
+		Utils.ensure(plans[vehicle].get(actionIndex).event == Event.PICK,
 				"advancePickUp needs an index corresponding to a pick up event");
 
 		List<GeneralPlan> neighbours = new LinkedList<>();
@@ -203,10 +239,10 @@ public class GeneralPlan {
 		if (actionIndex == 0)
 			return neighbours; // no need to do more work: it cannot be advanced
 
-		final List<VehicleAction> originalPlan = plans.get(vehicle);
+		final VehiclePlan originalPlan = plans[vehicle];
 
-		// Compute load at pickup time
-		int load = computeLoadAtTime(actionIndex, originalPlan);
+		// Load at pickup time
+		int load = originalPlan.getLoad(actionIndex);
 
 		/* Try to go back in time and advance the pick up action */
 
@@ -214,7 +250,7 @@ public class GeneralPlan {
 		int t = actionIndex - 1;
 
 		// Continue if beginning of time is not in the future and not overloaded
-		while (t >= 0 && load - originalPlan.get(t).getDifferentialWeight() <= vehicle.capacity()) {
+		while (t >= 0 && load - originalPlan.get(t).getDifferentialWeight() <= vehicles.get(vehicle).capacity()) {
 			GeneralPlan newGeneralPlan = createGeneralPlanByMovingAction(vehicle, actionIndex, t);
 			neighbours.add(newGeneralPlan);
 
@@ -226,15 +262,15 @@ public class GeneralPlan {
 		return neighbours;
 	}
 
-	private List<GeneralPlan> postponePickUp(Vehicle vehicle, int actionIndex) {
-		Utils.ensure(plans.get(vehicle).size() > actionIndex, "postponePickUp needs a vehicle with at least "
+	private List<GeneralPlan> postponePickUp(int vehicle, int actionIndex) {
+		Utils.ensure(plans[vehicle].size() > actionIndex, "postponePickUp needs a vehicle with at least "
 				+ actionIndex + " events");
-		Utils.ensure(plans.get(vehicle).get(actionIndex).event == Event.PICK,
+		Utils.ensure(plans[vehicle].get(actionIndex).event == Event.PICK,
 				"postponePickUp needs an index corresponding to a pick up event");
 
 		List<GeneralPlan> neighbours = new LinkedList<>();
 
-		final List<VehicleAction> originalPlan = plans.get(vehicle);
+		final VehiclePlan originalPlan = plans[vehicle];
 		final Task movedTask = originalPlan.get(actionIndex).task;
 
 		if (actionIndex + 1 == originalPlan.size())
@@ -258,10 +294,10 @@ public class GeneralPlan {
 		return neighbours;
 	}
 
-	private List<GeneralPlan> advanceDelivery(Vehicle vehicle, int actionIndex) {
-		Utils.ensure(plans.get(vehicle).size() > actionIndex, "advanceDelivery needs a vehicle with at least "
+	private List<GeneralPlan> advanceDelivery(int vehicle, int actionIndex) {
+		Utils.ensure(plans[vehicle].size() > actionIndex, "advanceDelivery needs a vehicle with at least "
 				+ actionIndex + " events");
-		Utils.ensure(plans.get(vehicle).get(actionIndex).event == Event.DELIVER,
+		Utils.ensure(plans[vehicle].get(actionIndex).event == Event.DELIVER,
 				"advanceDelivery needs an index corresponding to a pick up event");
 
 		List<GeneralPlan> neighbours = new LinkedList<>();
@@ -271,7 +307,7 @@ public class GeneralPlan {
 
 		/* Try to go back in time and advance the delivery action */
 
-		final List<VehicleAction> originalPlan = plans.get(vehicle);
+		final VehiclePlan originalPlan = plans[vehicle];
 		final Task movedTask = originalPlan.get(actionIndex).task;
 
 		// First attempt: just before original time
@@ -289,21 +325,22 @@ public class GeneralPlan {
 		return neighbours;
 	}
 
-	private List<GeneralPlan> postponeDelivery(Vehicle vehicle, int actionIndex) {
-		Utils.ensure(plans.get(vehicle).size() > actionIndex, "postponeDelivery needs a vehicle with at least "
+	private List<GeneralPlan> postponeDelivery(int vehicle, int actionIndex) {
+		Utils.ensure(plans[vehicle].size() > actionIndex, "postponeDelivery needs a vehicle with at least "
 				+ actionIndex + " events");
-		Utils.ensure(plans.get(vehicle).get(actionIndex).event == Event.DELIVER,
+		Utils.ensure(plans[vehicle].get(actionIndex).event == Event.DELIVER,
 				"postponeDelivery needs an index corresponding to a pick up event");
 
 		List<GeneralPlan> neighbours = new LinkedList<>();
 
-		final List<VehicleAction> originalPlan = plans.get(vehicle);
+		final VehiclePlan originalPlan = plans[vehicle];
 
 		if (actionIndex + 1 == originalPlan.size())
 			return neighbours; // no need to do more work: it cannot be postponed
 
-		// Compute load right before delivery
-		int load = computeLoadAtTime(actionIndex - 1, originalPlan);
+		// Load right before delivery
+		int load = originalPlan.getLoad(actionIndex - 1);
+		final int capacity = vehicles.get(vehicle).capacity();
 
 		/* Try to go forward in time and postpone the delivery action */
 
@@ -311,7 +348,7 @@ public class GeneralPlan {
 		int t = actionIndex + 1;
 
 		// Continue if end of time is not in the past and not overloaded
-		while (t < originalPlan.size() && load + originalPlan.get(t).getDifferentialWeight() <= vehicle.capacity()) {
+		while (t < originalPlan.size() && load + originalPlan.get(t).getDifferentialWeight() <= capacity) {
 			// The vehicle has enough room at time t so let's deliver the task later
 			GeneralPlan newGeneralPlan = createGeneralPlanByMovingAction(vehicle, actionIndex, t);
 			neighbours.add(newGeneralPlan);
@@ -327,100 +364,163 @@ public class GeneralPlan {
 	/**
 	 * Move the action at index `sourceIndex` of the given `vehicle` to index `destinationIndex` correctly
 	 */
-	private GeneralPlan createGeneralPlanByMovingAction(Vehicle vehicle, int sourceIndex, int destinationIndex) {
-		Map<Vehicle, List<VehicleAction>> newPlans = getCopyOfPlans();
-
-		// Move the given action carefully: make sure destination index is not invalidated
-		List<VehicleAction> newVehiclePlan = newPlans.get(vehicle);
-		VehicleAction action = newVehiclePlan.remove(sourceIndex);
-		if (sourceIndex >= destinationIndex)
-			newVehiclePlan.add(destinationIndex, action);
-		else
-			newVehiclePlan.add(destinationIndex - 1, action);
-
-		GeneralPlan newGeneralPlan = new GeneralPlan(newPlans, vehicles, tasks);
+	private GeneralPlan createGeneralPlanByMovingAction(int vehicle, int sourceIndex, int destinationIndex) {
+		// Only the plan of the given vehicle changes, the other ones are shared
+		VehiclePlan[] newPlans = plans.clone();
+		newPlans[vehicle] = plans[vehicle].withMovedAction(sourceIndex, destinationIndex);
+
+		Task movedTask = plans[vehicle].get(sourceIndex).task;
+		GeneralPlan newGeneralPlan = new GeneralPlan(newPlans, vehicles, tasks, topology, movedTask);
 		return newGeneralPlan;
 	}
 
-	private int computeLoadAtTime(int timeIndex, List<VehicleAction> plan) {
-		int load = 0;
-		for (int i = 0; i <= timeIndex; ++i) {
-			VehicleAction action = plan.get(i);
-			load += action.getDifferentialWeight();
-		}
-		return load;
+	/**
+	 * The returned vehicle has at least one task on its agenda
+	 */
+	private int selectRandomVehicle() {
+		int modelVehicule;
+		do {
+			modelVehicule = randomGenerator.nextInt(vehicles.size());
+		} while (plans[modelVehicule].isEmpty());
+
+		return modelVehicule;
 	}
 
-	// Performs deep copy of the `vehicle`'s plan
-	private LinkedList<VehicleAction> getCopyOfVehiclePlan(Vehicle vehicle) {
-		return new LinkedList<>(plans.get(vehicle));
+	/**
+	 * Cheapest way to insert a task in the plan of one vehicle; the indices are the ones of the actions in the new
+	 * plan
+	 */
+	static final class Insertion {
+		final int vehicle;
+		final Task task;
+		final int pickupIndex;
+		final int deliveryIndex;
+		final double delta; // cost difference implied by the insertion
+
+		Insertion(int vehicle, Task task, int pickupIndex, int deliveryIndex, double delta) {
+			this.vehicle = vehicle;
+			this.task = task;
+			this.pickupIndex = pickupIndex;
+			this.deliveryIndex = deliveryIndex;
+			this.delta = delta;
+		}
 	}
 
-	// Performs deep copy of all plans
-	private Map<Vehicle, List<VehicleAction>> getCopyOfPlans() {
-		// NOTE: using new HashMap<>(plans) won't work as values are mutable lists.
+	/**
+	 * Find where `task`, which is not part of the `vehicle`-th plan, can be inserted in this plan for the least cost.
+	 * Every pair of positions is considered; the capacity is checked with the loads already known by the plan. Return
+	 * null if the vehicle cannot carry the task.
+	 */
+	Insertion findCheapestInsertion(int vehicle, Task task) {
+		final VehiclePlan plan = plans[vehicle];
+		final int capacity = plan.vehicle.capacity();
+
+		int bestPickupIndex = -1;
+		int bestDeliveryIndex = -1;
+		double bestDelta = Double.POSITIVE_INFINITY;
+
+		// The pickup is inserted before the i-th action and the delivery before the j-th one (original indices)
+		for (int i = 0; i <= plan.size(); ++i) {
+			if (plan.getLoad(i - 1) + task.weight > capacity)
+				continue;
+
+			City before = plan.getCity(i - 1);
+			City after = plan.getCity(i);
+
+			// Deliver right after the pickup
+			double delta = distance(before, task.pickupCity) + distance(task.pickupCity, task.deliveryCity)
+					+ distance(task.deliveryCity, after) - distance(before, after);
+			if (delta < bestDelta) {
+				bestDelta = delta;
+				bestPickupIndex = i;
+				bestDeliveryIndex = i + 1;
+			}
 
-		Map<Vehicle, List<VehicleAction>> copy = new HashMap<>(vehicles.size());
-		for (Vehicle vehicle : vehicles) {
-			copy.put(vehicle, getCopyOfVehiclePlan(vehicle));
+			// Deliver later on, as long as the task fits in the vehicle in between
+			double pickupDelta = distance(before, task.pickupCity) + distance(task.pickupCity, after)
+					- distance(before, after);
+			for (int j = i + 1; j <= plan.size() && plan.getLoad(j - 1) + task.weight <= capacity; ++j) {
+				City beforeDelivery = plan.getCity(j - 1);
+				City afterDelivery = plan.getCity(j);
+				delta = pickupDelta + distance(beforeDelivery, task.deliveryCity)
+						+ distance(task.deliveryCity, afterDelivery) - distance(beforeDelivery, afterDelivery);
+				if (delta < bestDelta) {
+					bestDelta = delta;
+					bestPickupIndex = i;
+					bestDeliveryIndex = j + 1; // the pickup is now before it
+				}
+			}
 		}
-		return copy;
+
+		if (bestPickupIndex < 0)
+			return null;
+
+		return new Insertion(vehicle, task, bestPickupIndex, bestDeliveryIndex, bestDelta * plan.vehicle.costPerKm());
+	}
+
+	// The distance to or from the end of a plan (null) is 0
+	private double distance(City from, City to) {
+		if (from == null || to == null)
+			return 0;
+		return topology.distance(from, to);
 	}
 
 	/**
-	 * The returned vehicle has at least one task on its agenda
+	 * Build the plan resulting from the given insertion
 	 */
-	private Vehicle selectRandomVehicle() {
-		Vehicle modelVehicule;
-		do {
-			int index = randomGenerator.nextInt(vehicles.size());
-			modelVehicule = vehicles.get(index);
-		} while (plans.get(modelVehicule).size() == 0);
+	GeneralPlan insert(Insertion insertion) {
+		VehiclePlan[] newPlans = plans.clone();
+		newPlans[insertion.vehicle] = plans[insertion.vehicle].withTask(insertion.task, insertion.pickupIndex,
+				insertion.deliveryIndex);
 
-		return modelVehicule;
+		return new GeneralPlan(newPlans, vehicles, tasks, topology, insertion.task);
 	}
 
-	public double computeOverallCost() {
-		// Return the cost if we already know it, otherwise we compute it
-		if (overallCostCache >= 0)
-			return overallCostCache;
-
-		overallCostCache = 0;
-		for (Vehicle vehicle : vehicles) {
-			List<VehicleAction> plan = plans.get(vehicle);
-			overallCostCache += computeCost(vehicle, plan);
+	/**
+	 * Build the plan without the given tasks; it is only valid once they are inserted back (see insert). The plans of
+	 * the vehicles that carry none of them are shared.
+	 */
+	GeneralPlan withoutTasks(Set<Task> removed) {
+		VehiclePlan[] newPlans = new VehiclePlan[plans.length];
+		for (int v = 0; v < plans.length; ++v) {
+			newPlans[v] = plans[v].withoutTasks(removed);
 		}
 
-		return overallCostCache;
+		return new GeneralPlan(newPlans, vehicles, tasks, topology, null);
 	}
 
-	private double computeCost(Vehicle vehicle, List<VehicleAction> actions) {
-		double cost = 0;
-		City currentCity = vehicle.getCurrentCity();
+	VehiclePlan getPlan(int vehicle) {
+		return plans[vehicle];
+	}
 
-		for (VehicleAction action : actions) {
-			City nextCity = null;
-			if (action.event == Event.PICK) {
-				nextCity = action.task.pickupCity;
-			} else {
-				nextCity = action.task.deliveryCity;
-			}
+	int getVehicleCount() {
+		return plans.length;
+	}
 
-			double distance = currentCity.distanceTo(nextCity);
-			currentCity = nextCity;
+	TaskSet getTasks() {
+		return tasks;
+	}
 
-			cost += distance * vehicle.costPerKm();
+	public double computeOverallCost() {
+		// Return the cost if we already know it, otherwise we compute it
+		if (overallCostCache >= 0)
+			return overallCostCache;
+
+		// The vehicles' plans cache their own cost, so only the new ones are actually computed
+		double cost = 0;
+		for (VehiclePlan plan : plans) {
+			cost += plan.getCost();
 		}
 
-		return cost;
+		overallCostCache = cost;
+		return overallCostCache;
 	}
 
 	public List<Plan> convertToLogistPlans() {
 		// Keep the correct order for plan
 		List<Plan> logistPlans = new ArrayList<>(vehicles.size());
-		for (Vehicle vehicle : vehicles) {
-			List<VehicleAction> plan = plans.get(vehicle);
-			Plan logistPlan = convertToLogistPlan(vehicle, plan);
+		for (VehiclePlan plan : plans) {
+			Plan logistPlan = convertToLogistPlan(plan.vehicle, plan.getActions());
 			logistPlans.add(logistPlan);
 		}
 
@@ -434,17 +534,13 @@ public class GeneralPlan {
 		for (VehicleAction action : actions) {
 			if (action.event == Event.PICK) {
 				// move to pickup location & pick it up
-				for (City city : currentCity.pathTo(action.task.pickupCity)) {
-					logistPlan.appendMove(city);
-				}
+				topology.appendPath(logistPlan, currentCity, action.task.pickupCity);
 
 				logistPlan.appendPickup(action.task);
 				currentCity = action.task.pickupCity;
 			} else {
 				// move to delivery location & deliver
-				for (City city : currentCity.pathTo(action.task.deliveryCity)) {
-					logistPlan.appendMove(city);
-				}
+				topology.appendPath(logistPlan, currentCity, action.task.deliveryCity);
 
 				logistPlan.appendDelivery(action.task);
 				currentCity = action.task.deliveryCity;
@@ -468,8 +564,9 @@ public class GeneralPlan {
 		final String rule6 = "No vehicle should be overloaded";
 
 		// Ensure rule 1 holds
-		for (Vehicle vehicle : vehicles) {
-			Utils.ensure(plans.get(vehicle) != null, rule1);
+		Utils.ensure(plans.length == vehicles.size(), rule1);
+		for (int i = 0; i < plans.length; ++i) {
+			Utils.ensure(plans[i] != null && plans[i].vehicle.equals(vehicles.get(i)), rule1);
 		}
 
 		// Build up knowledge about our plans:
@@ -486,8 +583,9 @@ public class GeneralPlan {
 		// i.e. the index of the corresponding action
 
 		// Iterate on all plans to build up knowledge
-		for (Vehicle vehicle : vehicles) {
-			List<VehicleAction> actions = plans.get(vehicle);
+		for (VehiclePlan plan : plans) {
+			Vehicle vehicle = plan.vehicle;
+			List<VehicleAction> actions = plan.getActions();
 
 			int load = 0; // keep track of current load for the vehicle
 
@@ -536,8 +634,8 @@ public class GeneralPlan {
 	public String toString() {
 		String rep = "";
 
-		for (Vehicle vehicle : vehicles) {
-			rep += "Plan for vehicle n° " + vehicle.id() + ": " + plans.get(vehicle) + "\n";
+		for (VehiclePlan plan : plans) {
+			rep += "Plan for vehicle n° " + plan.vehicle.id() + ": " + plan + "\n";
 		}
 
 		return rep;
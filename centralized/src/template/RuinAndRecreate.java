@@ -0,0 +1,181 @@
+package template;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import logist.task.Task;
+import logist.topology.Topology.City;
+import template.GeneralPlan.Insertion;
+import template.VehicleAction.Event;
+
+/**
+ * Large neighborhood of a GeneralPlan: up to `maxRemoved` related tasks are removed from the plan (ruin) and inserted
+ * back one by one (recreate). This changes far more of the plan at once than the neighbors of generateNeighbors.
+ *
+ * The removed tasks are chosen at random, around a random task (the tasks whose pickup cities are the closest to its
+ * pickup city) or among the tasks of one vehicle. They are inserted back either greedily, the cheapest insertion
+ * first, or by regret, the task that would lose the most by not getting its best vehicle first.
+ */
+final class RuinAndRecreate {
+
+	enum Removal {
+		RANDOM, CLUSTERED, SAME_VEHICLE
+	}
+
+	private final TopologyIndex topology;
+	private final Random random;
+	private final int maxRemoved;
+
+	RuinAndRecreate(TopologyIndex topology, Random random, int maxRemoved) {
+		Utils.ensure(maxRemoved >= 1, "at least one task has to be removed");
+
+		this.topology = topology;
+		this.random = random;
+		this.maxRemoved = maxRemoved;
+	}
+
+	/**
+	 * Build a random neighbor of `current`, which has at least one task
+	 */
+	GeneralPlan neighbor(GeneralPlan current) {
+		List<Task> tasks = new ArrayList<>(current.getTasks());
+		Utils.ensure(tasks.size() > 0, "ruin and recreate needs at least one task");
+
+		int count = 1 + random.nextInt(Math.min(maxRemoved, tasks.size()));
+		Removal removal = Removal.values()[random.nextInt(Removal.values().length)];
+
+		List<Task> removed;
+		switch (removal) {
+		case RANDOM:
+			removed = selectRandom(tasks, count);
+			break;
+
+		case CLUSTERED:
+			removed = selectClustered(tasks, count);
+			break;
+
+		case SAME_VEHICLE:
+			removed = selectSameVehicle(current, count);
+			break;
+
+		default:
+			throw new RuntimeException("Unknown removal heuristic " + removal);
+		}
+
+		return recreate(current.withoutTasks(new HashSet<>(removed)), removed, random.nextBoolean());
+	}
+
+	/**
+	 * Remove all the tasks of `plan` and insert them back by regret; this builds a good initial plan
+	 */
+	GeneralPlan rebuild(GeneralPlan plan) {
+		List<Task> tasks = new ArrayList<>(plan.getTasks());
+		return recreate(plan.withoutTasks(new HashSet<>(tasks)), tasks, true);
+	}
+
+	private List<Task> selectRandom(List<Task> tasks, int count) {
+		Collections.shuffle(tasks, random);
+		return tasks.subList(0, count);
+	}
+
+	private List<Task> selectClustered(List<Task> tasks, int count) {
+		final City seedCity = tasks.get(random.nextInt(tasks.size())).pickupCity;
+
+		// The seed task comes first since its distance is 0
+		Collections.shuffle(tasks, random); // break the ties at random
+		Collections.sort(tasks, new Comparator<Task>() {
+			@Override
+			public int compare(Task a, Task b) {
+				return Double.compare(topology.distance(seedCity, a.pickupCity),
+						topology.distance(seedCity, b.pickupCity));
+			}
+		});
+
+		return tasks.subList(0, count);
+	}
+
+	private List<Task> selectSameVehicle(GeneralPlan current, int count) {
+		VehiclePlan plan;
+		do {
+			plan = current.getPlan(random.nextInt(current.getVehicleCount()));
+		} while (plan.isEmpty());
+
+		List<Task> tasks = new ArrayList<>(plan.size() / 2);
+		for (VehicleAction action : plan.getActions()) {
+			if (action.event == Event.PICK)
+				tasks.add(action.task);
+		}
+		Collections.shuffle(tasks, random);
+
+		return tasks.subList(0, Math.min(count, tasks.size()));
+	}
+
+	/**
+	 * Insert the `removed` tasks back into `ruined`, one at a time. The best insertion of each task in each vehicle is
+	 * kept between two steps: only the ones of the vehicle that just got a task are updated.
+	 */
+	private GeneralPlan recreate(GeneralPlan ruined, List<Task> removed, boolean regret) {
+		final int vehicles = ruined.getVehicleCount();
+
+		List<Task> remaining = new ArrayList<>(removed);
+		Insertion[][] insertions = new Insertion[remaining.size()][vehicles];
+		for (int t = 0; t < remaining.size(); ++t) {
+			for (int v = 0; v < vehicles; ++v) {
+				insertions[t][v] = ruined.findCheapestInsertion(v, remaining.get(t));
+			}
+		}
+
+		GeneralPlan plan = ruined;
+		int size = remaining.size(); // the remaining tasks are the first `size` ones
+		while (size > 0) {
+			int chosen = -1;
+			Insertion chosenInsertion = null;
+			double chosenKey = Double.NEGATIVE_INFINITY;
+
+			for (int t = 0; t < size; ++t) {
+				// Best and second best insertions, in different vehicles
+				Insertion best = null;
+				double secondDelta = Double.POSITIVE_INFINITY;
+				for (Insertion insertion : insertions[t]) {
+					if (insertion == null)
+						continue;
+					if (best == null || insertion.delta < best.delta) {
+						if (best != null)
+							secondDelta = best.delta;
+						best = insertion;
+					} else if (insertion.delta < secondDelta) {
+						secondDelta = insertion.delta;
+					}
+				}
+				Utils.ensure(best != null, "no vehicle is big enough");
+
+				// Ties, e.g. several tasks that fit in a single vehicle, go to the cheapest insertion
+				double key = regret ? secondDelta - best.delta : -best.delta;
+				if (chosenInsertion == null || key > chosenKey
+						|| (key == chosenKey && best.delta < chosenInsertion.delta)) {
+					chosen = t;
+					chosenInsertion = best;
+					chosenKey = key;
+				}
+			}
+
+			plan = plan.insert(chosenInsertion);
+
+			// Forget the chosen task by moving the last remaining one in its place
+			--size;
+			remaining.set(chosen, remaining.get(size));
+			insertions[chosen] = insertions[size];
+
+			for (int t = 0; t < size; ++t) {
+				insertions[t][chosenInsertion.vehicle] = plan.findCheapestInsertion(chosenInsertion.vehicle,
+						remaining.get(t));
+			}
+		}
+
+		return plan;
+	}
+}
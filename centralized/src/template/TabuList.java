@@ -0,0 +1,32 @@
+package template;
+
+import java.util.Arrays;
+
+/**
+ * Short-term memory of the tabu search: the ids of the last `tenure` moved tasks, in a ring buffer.
+ */
+final class TabuList {
+
+	private final int[] taskIds;
+	private int next = 0; // where the next id is written, over the oldest one
+
+	TabuList(int tenure) {
+		Utils.ensure(tenure > 0, "the tabu tenure must be positive");
+
+		taskIds = new int[tenure];
+		Arrays.fill(taskIds, -1);
+	}
+
+	void add(int taskId) {
+		taskIds[next] = taskId;
+		next = (next + 1) % taskIds.length;
+	}
+
+	boolean contains(int taskId) {
+		for (int id : taskIds) {
+			if (id == taskId)
+				return true;
+		}
+		return false;
+	}
+}
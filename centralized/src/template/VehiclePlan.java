@@ -0,0 +1,264 @@
+package template;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import logist.simulation.Vehicle;
+import logist.task.Task;
+import logist.topology.Topology.City;
+import template.VehicleAction.Event;
+
+/**
+ * Immutable sequence of actions of one vehicle, with its load profile and (lazily) its cost.
+ *
+ * Since it cannot change, a VehiclePlan is shared between a GeneralPlan and its neighbors: a neighbor only creates
+ * the plans of the one or two vehicles it modifies. Moreover, a plan obtained by moving one action of another plan
+ * (see withMovedAction) only builds its actions when they are accessed; its cost is derived from the other plan's
+ * in constant time. Most neighbors are only ever costed, never explored.
+ */
+public final class VehiclePlan {
+
+	public final Vehicle vehicle;
+
+	private final TopologyIndex topology;
+	private final int size;
+
+	// Built lazily for moved plans; see materialize
+	private volatile VehicleAction[] actions;
+	private int[] loads; // load of the vehicle right after each action; set before `actions`
+
+	// For moved plans, until they are materialized: the original plan and the move
+	private VehiclePlan origin;
+	private int sourceIndex;
+	private int targetIndex; // final index of the moved action
+
+	private volatile double costCache = -1; // plans can be costed from several threads
+
+	public VehiclePlan(Vehicle vehicle, List<VehicleAction> actions, TopologyIndex topology) {
+		this(vehicle, actions.toArray(new VehicleAction[actions.size()]), topology);
+	}
+
+	private VehiclePlan(Vehicle vehicle, VehicleAction[] actions, TopologyIndex topology) {
+		this.vehicle = vehicle;
+		this.topology = topology;
+		this.size = actions.length;
+		this.loads = computeLoads(actions);
+		this.actions = actions;
+	}
+
+	private VehiclePlan(VehiclePlan origin, int sourceIndex, int targetIndex) {
+		this.vehicle = origin.vehicle;
+		this.topology = origin.topology;
+		this.size = origin.size;
+		this.origin = origin;
+		this.sourceIndex = sourceIndex;
+		this.targetIndex = targetIndex;
+		this.costCache = origin.getCost() + origin.moveCostDelta(sourceIndex, targetIndex);
+	}
+
+	private static int[] computeLoads(VehicleAction[] actions) {
+		int[] loads = new int[actions.length];
+		int load = 0;
+		for (int i = 0; i < actions.length; ++i) {
+			load += actions[i].getDifferentialWeight();
+			loads[i] = load;
+		}
+		return loads;
+	}
+
+	/**
+	 * Build the actions of a moved plan
+	 */
+	private VehicleAction[] materialize() {
+		VehicleAction[] result = actions;
+		if (result != null)
+			return result;
+
+		synchronized (this) {
+			if (actions == null) {
+				VehicleAction[] originActions = origin.materialize();
+				VehicleAction[] newActions = originActions.clone();
+				VehicleAction moved = originActions[sourceIndex];
+				if (sourceIndex < targetIndex)
+					System.arraycopy(originActions, sourceIndex + 1, newActions, sourceIndex,
+							targetIndex - sourceIndex);
+				else
+					System.arraycopy(originActions, targetIndex, newActions, targetIndex + 1,
+							sourceIndex - targetIndex);
+				newActions[targetIndex] = moved;
+
+				loads = computeLoads(newActions);
+				actions = newActions;
+				origin = null; // no need to keep it alive
+			}
+			return actions;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public VehicleAction get(int index) {
+		return materialize()[index];
+	}
+
+	/**
+	 * Load right after the action at `timeIndex`; 0 before the first one (timeIndex = -1)
+	 */
+	public int getLoad(int timeIndex) {
+		if (timeIndex < 0)
+			return 0;
+
+		materialize();
+		return loads[timeIndex];
+	}
+
+	public List<VehicleAction> getActions() {
+		return Arrays.asList(materialize());
+	}
+
+	/**
+	 * Copy of this plan where the action at `sourceIndex` is moved before the action currently at
+	 * `destinationIndex` (or at the end); the same convention as List.add(index, element) after removing the action
+	 */
+	public VehiclePlan withMovedAction(int sourceIndex, int destinationIndex) {
+		materialize(); // the move is applied to this plan's actions
+		int target = sourceIndex >= destinationIndex ? destinationIndex : destinationIndex - 1;
+		return new VehiclePlan(this, sourceIndex, target);
+	}
+
+	/**
+	 * Cost difference implied by moving the action at `sourceIndex` to the final index `targetIndex`
+	 */
+	private double moveCostDelta(int sourceIndex, int targetIndex) {
+		if (sourceIndex == targetIndex)
+			return 0;
+
+		VehicleAction[] actions = materialize();
+		City moved = getCity(actions, sourceIndex);
+
+		// Remove the action: the legs around it are replaced by a direct one
+		double distance = -topology.distance(getCity(actions, sourceIndex - 1), moved);
+		if (sourceIndex + 1 < size) {
+			distance -= topology.distance(moved, getCity(actions, sourceIndex + 1));
+			distance += topology.distance(getCity(actions, sourceIndex - 1), getCity(actions, sourceIndex + 1));
+		}
+
+		// Insert it at `targetIndex` of the plan without the action, between the actions `before` and `after` of
+		// this plan
+		int before = targetIndex - 1 < sourceIndex ? targetIndex - 1 : targetIndex;
+		int after = targetIndex < sourceIndex ? targetIndex : targetIndex + 1;
+		distance += topology.distance(getCity(actions, before), moved);
+		if (after < size) {
+			distance += topology.distance(moved, getCity(actions, after));
+			distance -= topology.distance(getCity(actions, before), getCity(actions, after));
+		}
+
+		return distance * vehicle.costPerKm();
+	}
+
+	/**
+	 * City of the action at `index`; the vehicle's initial city for index -1 and null past the end of the plan
+	 */
+	public City getCity(int index) {
+		return index < size ? getCity(materialize(), index) : null;
+	}
+
+	/**
+	 * City of the action at `index`, or the vehicle's initial city for index -1
+	 */
+	private City getCity(VehicleAction[] actions, int index) {
+		if (index < 0)
+			return vehicle.getCurrentCity();
+
+		VehicleAction action = actions[index];
+		return action.event == Event.PICK ? action.task.pickupCity : action.task.deliveryCity;
+	}
+
+	/**
+	 * Copy of this plan without the pickup and the delivery of `task`
+	 */
+	public VehiclePlan withoutTask(Task task) {
+		VehicleAction[] newActions = new VehicleAction[size - 2];
+		int j = 0;
+		for (VehicleAction action : materialize()) {
+			if (!action.task.equals(task))
+				newActions[j++] = action;
+		}
+		Utils.ensure(j == newActions.length, "withoutTask needs a task of the plan");
+
+		return new VehiclePlan(vehicle, newActions, topology);
+	}
+
+	/**
+	 * Copy of this plan without the pickups and the deliveries of `tasks`; this plan if none of them is part of it
+	 */
+	public VehiclePlan withoutTasks(Set<Task> tasks) {
+		List<VehicleAction> newActions = new ArrayList<>(size);
+		for (VehicleAction action : materialize()) {
+			if (!tasks.contains(action.task))
+				newActions.add(action);
+		}
+
+		return newActions.size() == size ? this : new VehiclePlan(vehicle, newActions, topology);
+	}
+
+	/**
+	 * Copy of this plan where the pickup and the delivery of `task` end up at the given indices
+	 */
+	public VehiclePlan withTask(Task task, int pickupIndex, int deliveryIndex) {
+		Utils.ensure(pickupIndex < deliveryIndex, "a task has to be picked up before being delivered");
+
+		VehicleAction[] actions = materialize();
+		VehicleAction[] newActions = new VehicleAction[size + 2];
+		for (int i = 0, j = 0; i < newActions.length; ++i) {
+			if (i == pickupIndex)
+				newActions[i] = new VehicleAction(Event.PICK, task);
+			else if (i == deliveryIndex)
+				newActions[i] = new VehicleAction(Event.DELIVER, task);
+			else
+				newActions[i] = actions[j++];
+		}
+
+		return new VehiclePlan(vehicle, newActions, topology);
+	}
+
+	/**
+	 * Copy of this plan where `task` is picked up and delivered first
+	 */
+	public VehiclePlan withTaskFirst(Task task) {
+		VehicleAction[] newActions = new VehicleAction[size + 2];
+		newActions[0] = new VehicleAction(Event.PICK, task);
+		newActions[1] = new VehicleAction(Event.DELIVER, task);
+		System.arraycopy(materialize(), 0, newActions, 2, size);
+
+		return new VehiclePlan(vehicle, newActions, topology);
+	}
+
+	public double getCost() {
+		// Return the cost if we already know it, otherwise we compute it
+		if (costCache >= 0)
+			return costCache;
+
+		double cost = 0;
+		VehicleAction[] actions = materialize();
+		for (int i = 0; i < size; ++i) {
+			cost += topology.distance(getCity(actions, i - 1), getCity(actions, i)) * vehicle.costPerKm();
+		}
+
+		costCache = cost;
+		return costCache;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(materialize());
+	}
+}
@@ -1,9 +1,7 @@
 package template;
 
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.PriorityQueue;
 
 import logist.plan.Plan;
@@ -19,7 +17,7 @@ import template.State.Action;
 public class AStarPlanner {
 
 	// Set of nodes already evaluated (with their estimated cost)
-	private final Map<State, Double> closedSet = new HashMap<State, Double>();
+	private final ClosedSet closedSet;
 
 	// Set of nodes to be visited, with their estimated cost, sorted by priority (cost).
 	private final PriorityQueue<PartialPlan> queue = new PriorityQueue<PartialPlan>();
@@ -29,36 +27,62 @@ public class AStarPlanner {
 
 	private final Heuristic algorithm;
 
+	// Best plan known before the search, if any, and its cost
+	private Plan incumbent = null;
+	private double incumbentCost = Double.POSITIVE_INFINITY;
+
 	/* see computeHeuristic for details */
 	public enum Heuristic {
-		DELIVERY, OPTIMISTIC, CONSTANT
+		DELIVERY(false), OPTIMISTIC(true), CONSTANT(false), TRAVEL(true);
+
+		// Admissible heuristics never overestimate the cost, so nodes costlier than a known plan can be pruned
+		public final boolean admissible;
+
+		private Heuristic(boolean admissible) {
+			this.admissible = admissible;
+		}
 	};
 
-	public AStarPlanner(Vehicle vehicle, TaskSet tasks, Heuristic algorithm) {
+	public AStarPlanner(Vehicle vehicle, TaskSet tasks, TopologyIndex topology, Heuristic algorithm) {
 		this.algorithm = algorithm;
 
 		// Initialize algorithm from the start node
-		start = State.createInitialState(vehicle, tasks);
-		List<Action> noAction = new LinkedList<Action>();
+		start = State.createInitialState(vehicle, tasks, topology);
+		closedSet = new ClosedSet(start.space);
 		double knownCost = 0.0;
-		double heuristic = computeHeuristic(start);
-		PartialPlan initialPlan = new PartialPlan(noAction, start, heuristic, knownCost);
+		double heuristic = computeHeuristic(algorithm, start);
+		PartialPlan initialPlan = new PartialPlan(null, null, start, heuristic, knownCost);
 
 		queue.add(initialPlan);
 	}
 
+	/**
+	 * Provide a plan (e.g. a repaired one, see PlanRepair) whose cost is used as upper bound; it is returned if the
+	 * search cannot find a better one
+	 */
+	public void setIncumbent(Plan plan, double cost) {
+		this.incumbent = plan;
+		this.incumbentCost = cost;
+	}
+
 	public Plan build() {
 
-		do {
+		while (!queue.isEmpty()) {
 			PartialPlan node = dequeue();
 
+			if (algorithm.admissible && node.getCost() >= incumbentCost)
+				break; // The incumbent is optimal
+
 			if (node.lastState.isFinal()) {
+				if (node.knownCost >= incumbentCost)
+					break;
+
 				System.out.println("# of node visited: " + closedSet.size());
 				return buildPlan(node);
 			}
 
-			Double previousCost = closedSet.getOrDefault(node.lastState, Double.POSITIVE_INFINITY);
-			Double currentCost = node.getCost();
+			double previousCost = closedSet.get(node.lastState);
+			double currentCost = node.getCost();
 			if (currentCost < previousCost) {
 				closedSet.put(node.lastState, currentCost);
 
@@ -67,15 +91,21 @@ public class AStarPlanner {
 					enqueue(node, action);
 				}
 			}
+		}
+
+		System.out.println("# of node visited: " + closedSet.size() + " (kept the incumbent)");
+
+		if (incumbent == null)
+			throw new AssertionError("Should not happen.");
 
-		} while (true);
+		return incumbent;
 	}
 
 	private Plan buildPlan(PartialPlan node) {
 		// Convert the actions and build the optimal plan
 		List<logist.plan.Action> actions = new LinkedList<logist.plan.Action>();
-		for (Action action : node.actions) {
-			actions.add(action.getLogistAction());
+		for (Action action : node.getActions()) {
+			action.appendLogistActions(actions);
 		}
 
 		Plan plan = new Plan(start.currentCity, actions);
@@ -86,8 +116,11 @@ public class AStarPlanner {
 		return plan;
 	}
 
-	private double computeHeuristic(State state) {
-		switch (algorithm) {
+	/**
+	 * Estimate the cost from `state` to the goal; shared with the other A* variants
+	 */
+	static double computeHeuristic(Heuristic heuristic, State state) {
+		switch (heuristic) {
 		case CONSTANT:
 			// Simplest heuristic
 			// -> fast, but sub-optimal for small enough problem. Doesn't converge for higher number of tasks.
@@ -96,12 +129,17 @@ public class AStarPlanner {
 		case OPTIMISTIC:
 			// Naive heuristic
 			// -> MUCH slower but much more cost-efficient
-			return -state.availableTasks.rewardSum() - state.deliveries.rewardSum();
+			return -state.availableRewardSum() - state.deliveriesRewardSum();
+
+		case TRAVEL:
+			// Same as OPTIMISTIC plus a lower bound on the travel cost (see State.travelCostBound)
+			// -> admissible, hence optimal, and far fewer nodes are visited
+			return -state.availableRewardSum() - state.deliveriesRewardSum() + state.travelCostBound();
 
 		case DELIVERY:
 			// Slightly less naive heuristic: use only what's on the lorry to predict cost
 			// -> Very fast, a bit sub-optimal
-			return -state.deliveries.rewardSum();
+			return -state.deliveriesRewardSum();
 
 		default:
 			throw new AssertionError("Should not happen.");
@@ -110,15 +148,17 @@ public class AStarPlanner {
 
 	private void enqueue(PartialPlan node, Action action) {
 		// Augment the partial plan with the given action and compute the new cost
-		List<Action> actions = new LinkedList<Action>(node.actions);
-		actions.add(action);
-
 		State lastState = action.apply();
 
 		double knownCost = node.knownCost + action.cost();
-		double heuristic = computeHeuristic(lastState);
+		double heuristic = computeHeuristic(algorithm, lastState);
+
+		if (algorithm.admissible && knownCost + heuristic >= incumbentCost)
+			return; // Cannot beat the incumbent
+		if (knownCost + heuristic >= closedSet.get(lastState))
+			return; // Dominated: the state was already expanded with a lower cost
 
-		PartialPlan nextNode = new PartialPlan(actions, lastState, heuristic, knownCost);
+		PartialPlan nextNode = new PartialPlan(node, action, lastState, heuristic, knownCost);
 
 		queue.add(nextNode);
 	}
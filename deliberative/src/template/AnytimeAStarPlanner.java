@@ -0,0 +1,143 @@
+package template;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import logist.plan.Plan;
+import logist.simulation.Vehicle;
+import logist.task.TaskSet;
+import template.State.Action;
+
+/**
+ * Anytime repairing A* (ARA*): a first plan is found quickly with a heavily weighted heuristic, then the weight is
+ * decreased step by step and the search resumes from the previous open list, until the weight reaches 1 (the plan is
+ * then optimal) or the deadline is reached. The best plan found so far is returned.
+ *
+ * Every complete plan collects the same rewards, so this search only minimizes the travel cost and uses the
+ * admissible State.travelCostBound as heuristic; weighting a reward-based heuristic would not make sense.
+ */
+public class AnytimeAStarPlanner {
+
+	private final State start;
+	private final long deadline; // in ms, see System.currentTimeMillis
+	private final double weightStep;
+
+	private double weight;
+
+	// Best travel cost known for each state, and states expanded during the current iteration
+	private final ClosedSet costs;
+	private ClosedSet expanded;
+
+	private PriorityQueue<PartialPlan> queue = new PriorityQueue<PartialPlan>();
+	private List<PartialPlan> inconsistent = new ArrayList<PartialPlan>(); // improved after their expansion
+
+	private PartialPlan solution = null;
+	private long visitedCount = 0;
+
+	public AnytimeAStarPlanner(Vehicle vehicle, TaskSet tasks, TopologyIndex topology, double initialWeight,
+			double weightStep, long deadline) {
+		this.start = State.createInitialState(vehicle, tasks, topology);
+		this.weight = initialWeight;
+		this.weightStep = weightStep;
+		this.deadline = deadline;
+		this.costs = new ClosedSet(start.space);
+		this.expanded = new ClosedSet(start.space);
+
+		if (initialWeight < 1 || weightStep <= 0)
+			throw new IllegalArgumentException("Invalid weights for anytime A*");
+
+		costs.put(start, 0.0);
+		queue.add(createNode(null, null, start, 0.0));
+	}
+
+	public Plan build() {
+		improveSolution();
+		System.out.println("Anytime A*: weight " + weight + " gives cost " + solution.knownCost);
+
+		while (weight > 1 && System.currentTimeMillis() < deadline) {
+			weight = Math.max(1, weight - weightStep);
+
+			// Resume from the open list and the inconsistent nodes, sorted with the new weight
+			PriorityQueue<PartialPlan> previous = queue;
+			queue = new PriorityQueue<PartialPlan>(Math.max(1, previous.size() + inconsistent.size()));
+			for (PartialPlan node : previous) {
+				requeue(node);
+			}
+			for (PartialPlan node : inconsistent) {
+				requeue(node);
+			}
+			inconsistent = new ArrayList<PartialPlan>();
+			expanded = new ClosedSet(start.space);
+
+			improveSolution();
+			System.out.println("Anytime A*: weight " + weight + " gives cost " + solution.knownCost);
+		}
+
+		System.out.println("# of node visited: " + visitedCount);
+
+		List<logist.plan.Action> actions = new LinkedList<logist.plan.Action>();
+		for (Action action : solution.getActions()) {
+			action.appendLogistActions(actions);
+		}
+
+		return new Plan(start.currentCity, actions);
+	}
+
+	/**
+	 * Weighted A* from the current open list; stop when the solution cannot be improved with the current weight or
+	 * when the deadline is reached, but only once a first solution is known
+	 */
+	private void improveSolution() {
+		while (!queue.isEmpty()) {
+			if (solution != null && System.currentTimeMillis() >= deadline)
+				return;
+
+			PartialPlan node = queue.peek();
+			if (solution != null && node.getCost() >= solution.knownCost)
+				return; // no better solution with this weight
+
+			queue.poll();
+			State state = node.lastState;
+			if (node.knownCost > costs.get(state))
+				continue; // a cheaper path to this state was found meanwhile
+
+			if (state.isFinal()) {
+				solution = node;
+				return;
+			}
+
+			++visitedCount;
+			expanded.add(state);
+
+			for (Action action : state.getLegalActions()) {
+				State lastState = action.apply();
+				double knownCost = node.knownCost + action.travelCost();
+				if (knownCost >= costs.get(lastState))
+					continue;
+
+				costs.put(lastState, knownCost);
+				PartialPlan child = createNode(node, action, lastState, knownCost);
+				if (expanded.get(lastState) < Double.POSITIVE_INFINITY)
+					inconsistent.add(child);
+				else
+					queue.add(child);
+			}
+		}
+	}
+
+	private void requeue(PartialPlan node) {
+		// Stale nodes and nodes that cannot lead to a better solution are dropped
+		if (node.knownCost > costs.get(node.lastState))
+			return;
+		if (solution != null && node.knownCost + node.lastState.travelCostBound() >= solution.knownCost)
+			return;
+
+		queue.add(createNode(node.parent, node.lastAction, node.lastState, node.knownCost));
+	}
+
+	private PartialPlan createNode(PartialPlan parent, Action action, State state, double knownCost) {
+		return new PartialPlan(parent, action, state, weight * state.travelCostBound(), knownCost);
+	}
+}
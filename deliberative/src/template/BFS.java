@@ -1,8 +1,9 @@
 package template;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import logist.plan.Action;
 import logist.plan.Plan;
@@ -15,40 +16,52 @@ public class BFS {
 	private City initialCity;
 	private State intialState;
 
-	public BFS(Vehicle vehicle, TaskSet tasks) {
+	public BFS(Vehicle vehicle, TaskSet tasks, TopologyIndex topology) {
 		super();
 		this.initialCity = vehicle.getCurrentCity();
-		this.intialState = State.createInitialState(vehicle, tasks);
+		this.intialState = State.createInitialState(vehicle, tasks, topology);
 
 	}
 
 	/**
+	 * Every action changes the status of one task, so all the plans reaching a state have the same number of
+	 * actions: the search goes level by level and, for each state of the next level, only keeps the cheapest plan
+	 * reaching it since the other ones are dominated.
 	 * 
 	 * @return Best Plan according to BFS algorithm
 	 */
 
 	public Plan build() {
-		LinkedList<PartialPlan> queue = new LinkedList<PartialPlan>();
-		ArrayList<State> alreadyVisitedStates = new ArrayList<State>();
-		PartialPlan initialNode = new PartialPlan(new ArrayList<State.Action>(), intialState);
-		queue.addLast(initialNode);
-		while (!queue.isEmpty()) {
-			PartialPlan node = queue.poll();
-			State state = node.lastState;
-			if (state.isFinal()) {
-				System.out.println("# of node visited: " + alreadyVisitedStates.size());
-				return new Plan(initialCity, convertToAction(node.actions));
-			}
-			if (!alreadyVisitedStates.contains(state)) {
-				alreadyVisitedStates.add(state);
+		Map<State, PartialPlan> level = new HashMap<State, PartialPlan>();
+		level.put(intialState, new PartialPlan(null, null, intialState, 0, 0));
+		long visitedCount = 0;
+		while (!level.isEmpty()) {
+			Map<State, PartialPlan> nextLevel = new HashMap<State, PartialPlan>();
+			PartialPlan best = null;
+			for (PartialPlan node : level.values()) {
+				++visitedCount;
+				State state = node.lastState;
+				if (state.isFinal()) {
+					if (best == null || node.knownCost < best.knownCost)
+						best = node;
+					continue;
+				}
 				for (State.Action action : state.getLegalActions()) {
 					State successorState = state.nextState(action);
-					ArrayList<State.Action> futureActions = new ArrayList<State.Action>(node.actions);
-					futureActions.add(action);
-					queue.add(new PartialPlan(futureActions, successorState));
-
+					double knownCost = node.knownCost + action.cost();
+					PartialPlan previous = nextLevel.get(successorState);
+					if (previous == null || knownCost < previous.knownCost) {
+						nextLevel.put(successorState, new PartialPlan(node, action, successorState, 0, knownCost));
+					}
 				}
 			}
+
+			if (best != null) {
+				// The final states all are on the same level
+				System.out.println("# of node visited: " + visitedCount);
+				return new Plan(initialCity, convertToAction(best.getActions()));
+			}
+			level = nextLevel;
 		}
 
 		throw new AssertionError("Should not append");
@@ -64,7 +77,7 @@ public class BFS {
 	private List<Action> convertToAction(List<State.Action> actions) {
 		ArrayList<Action> converted = new ArrayList<Action>();
 		for (State.Action action : actions) {
-			converted.add(action.getLogistAction());
+			action.appendLogistActions(converted);
 		}
 		return converted;
 	}
@@ -0,0 +1,104 @@
+package template;
+
+import java.util.Arrays;
+
+/**
+ * Map from states to their best known cost, with open addressing (linear probing) over primitive arrays: the keys of
+ * the states are copied into one flat `long[]` so that no object is kept per entry.
+ */
+final class ClosedSet {
+
+	private static final double MAX_LOAD = 0.5;
+
+	private final int words; // length of a key
+
+	private long[] keys; // the i-th slot's key is at [i * words, (i + 1) * words)
+	private double[] costs; // NaN marks an empty slot
+	private int mask; // capacity - 1, the capacity is a power of two
+	private int size = 0;
+
+	ClosedSet(StateSpace space) {
+		this.words = space.words;
+		allocate(1 << 10);
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Cost associated with the given state, or +infinity if there is none
+	 */
+	double get(State state) {
+		int slot = find(keys, state.key);
+		return Double.isNaN(costs[slot]) ? Double.POSITIVE_INFINITY : costs[slot];
+	}
+
+	/**
+	 * Use this map as a set: add the state if it is not there yet, with a cost of 0. Return whether it was added.
+	 */
+	boolean add(State state) {
+		int slot = find(keys, state.key);
+		if (!Double.isNaN(costs[slot]))
+			return false;
+
+		put(state, 0);
+		return true;
+	}
+
+	void put(State state, double cost) {
+		int slot = find(keys, state.key);
+		if (Double.isNaN(costs[slot])) {
+			System.arraycopy(state.key, 0, keys, slot * words, words);
+			++size;
+		}
+		costs[slot] = cost;
+
+		if (size > MAX_LOAD * costs.length)
+			grow();
+	}
+
+	/**
+	 * Index of the slot holding `key`, or of the empty slot where it would be inserted
+	 */
+	private int find(long[] table, long[] key) {
+		int slot = StateSpace.hash(key) & mask;
+		while (!Double.isNaN(costs[slot]) && !matches(table, slot, key)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private boolean matches(long[] table, int slot, long[] key) {
+		int offset = slot * words;
+		for (int i = 0; i < words; ++i) {
+			if (table[offset + i] != key[i])
+				return false;
+		}
+		return true;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity * words];
+		costs = new double[capacity];
+		Arrays.fill(costs, Double.NaN);
+		mask = capacity - 1;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		double[] oldCosts = costs;
+		allocate(oldCosts.length * 2);
+
+		long[] key = new long[words];
+		for (int i = 0; i < oldCosts.length; ++i) {
+			if (Double.isNaN(oldCosts[i]))
+				continue;
+
+			System.arraycopy(oldKeys, i * words, key, 0, words);
+			int slot = find(keys, key);
+			System.arraycopy(key, 0, keys, slot * words, words);
+			costs[slot] = oldCosts[i];
+		}
+	}
+}
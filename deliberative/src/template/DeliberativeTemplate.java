@@ -1,8 +1,10 @@
 package template;
 
 /* import table */
+import logist.LogistSettings;
 import logist.agent.Agent;
 import logist.behavior.DeliberativeBehavior;
+import logist.config.Parsers;
 import logist.plan.Plan;
 import logist.simulation.Vehicle;
 import logist.task.Task;
@@ -17,7 +19,7 @@ import logist.topology.Topology.City;
 public class DeliberativeTemplate implements DeliberativeBehavior {
 
 	enum Algorithm {
-		BFS, ASTAR, NAIVE
+		BFS, ASTAR, IDASTAR, SMASTAR, ANYTIME, HDASTAR, NAIVE
 	}
 
 	/* the properties of the agent */
@@ -26,9 +28,31 @@ public class DeliberativeTemplate implements DeliberativeBehavior {
 	/* the planning class */
 	Algorithm algorithm;
 
+	/* precomputed distances & paths */
+	TopologyIndex topology;
+
+	/* time allowed to compute a plan, in ms */
+	long timeoutPlan;
+
+	/* last plan computed and whether it was cancelled, see planCancelled */
+	Plan previousPlan = null;
+	boolean cancelled = false;
+
 	@Override
 	public void setup(Topology topology, TaskDistribution td, Agent agent) {
 		this.agent = agent;
+		this.topology = new TopologyIndex(topology);
+
+		// this code is used to get the timeouts
+		LogistSettings ls = null;
+		try {
+			ls = Parsers.parseSettings("config/settings_default.xml");
+		} catch (Exception e) {
+			throw new RuntimeException("There was a problem loading the configuration file.", e);
+		}
+
+		// The plan method cannot execute more than timeout_plan milliseconds
+		timeoutPlan = ls.get(LogistSettings.TimeoutKey.PLAN);
 
 		// initialize the planner
 		String algorithmName = agent.readProperty("algorithm", String.class, "ASTAR");
@@ -47,6 +71,22 @@ public class DeliberativeTemplate implements DeliberativeBehavior {
 			plan = aStarPlan(vehicle, tasks);
 			break;
 
+		case IDASTAR:
+			plan = idaStarPlan(vehicle, tasks);
+			break;
+
+		case SMASTAR:
+			plan = smaStarPlan(vehicle, tasks);
+			break;
+
+		case ANYTIME:
+			plan = anytimePlan(vehicle, tasks, startTime);
+			break;
+
+		case HDASTAR:
+			plan = hdaStarPlan(vehicle, tasks);
+			break;
+
 		case BFS:
 			plan = bfs(vehicle, tasks);
 			break;
@@ -67,6 +107,9 @@ public class DeliberativeTemplate implements DeliberativeBehavior {
 
 		System.out.println("Plan computed in " + (endTime - startTime) / 1000.0 + "s");
 
+		previousPlan = plan;
+		cancelled = false;
+
 		return plan;
 	}
 
@@ -76,14 +119,12 @@ public class DeliberativeTemplate implements DeliberativeBehavior {
 
 		for (Task task : tasks) {
 			// move: current city => pickup location
-			for (City city : current.pathTo(task.pickupCity))
-				plan.appendMove(city);
+			topology.appendPath(plan, current, task.pickupCity);
 
 			plan.appendPickup(task);
 
 			// move: pickup location => delivery location
-			for (City city : task.path())
-				plan.appendMove(city);
+			topology.appendPath(plan, task.pickupCity, task.deliveryCity);
 
 			plan.appendDelivery(task);
 
@@ -94,20 +135,66 @@ public class DeliberativeTemplate implements DeliberativeBehavior {
 	}
 
 	private Plan bfs(Vehicle vehicle, TaskSet tasks) {
-		return new BFS(vehicle, tasks).build();
+		return new BFS(vehicle, tasks, topology).build();
 	}
 
 	private Plan aStarPlan(Vehicle vehicle, TaskSet tasks) {
+		AStarPlanner planner = new AStarPlanner(vehicle, tasks, topology, readHeuristic());
+
+		// When replanning, the previous plan without the tasks taken by others bounds the search
+		if (cancelled && previousPlan != null) {
+			PlanRepair repair = PlanRepair.repair(previousPlan, vehicle, tasks, topology);
+			if (repair != null) {
+				System.out.println("Previous plan repaired with cost " + repair.cost);
+				planner.setIncumbent(repair.plan, repair.cost);
+			}
+		}
+
+		return planner.build();
+	}
+
+	private Plan idaStarPlan(Vehicle vehicle, TaskSet tasks) {
+		return new IDAStarPlanner(vehicle, tasks, topology, readHeuristic()).build();
+	}
+
+	private Plan smaStarPlan(Vehicle vehicle, TaskSet tasks) {
+		// Maximum number of nodes kept in memory, interior nodes included
+		int nodeBudget = agent.readProperty("nodeBudget", Integer.class, 100000);
+
+		System.out.println("SMA* node budget: " + nodeBudget);
+
+		return new SMAStarPlanner(vehicle, tasks, topology, readHeuristic(), nodeBudget).build();
+	}
+
+	private Plan hdaStarPlan(Vehicle vehicle, TaskSet tasks) {
+		int threads = agent.readProperty("threads", Integer.class, Runtime.getRuntime().availableProcessors());
+
+		System.out.println("HDA* threads: " + threads);
+
+		return new HDAStarPlanner(vehicle, tasks, topology, readHeuristic(), threads).build();
+	}
+
+	private Plan anytimePlan(Vehicle vehicle, TaskSet tasks, long startTime) {
+		// The plan is refined with decreasing weights until 95% of the allowed time is spent
+		double initialWeight = agent.readProperty("initialWeight", Double.class, 3.0);
+		double weightStep = agent.readProperty("weightStep", Double.class, 0.5);
+		long deadline = startTime + (long) (timeoutPlan * 0.95);
+
+		return new AnytimeAStarPlanner(vehicle, tasks, topology, initialWeight, weightStep, deadline).build();
+	}
+
+	private AStarPlanner.Heuristic readHeuristic() {
 		String heuristicName = agent.readProperty("heuristic", String.class, "Delivery");
 		AStarPlanner.Heuristic algorithm = AStarPlanner.Heuristic.valueOf(heuristicName.toUpperCase());
 
 		System.out.println("A* heuristic: " + heuristicName);
 
-		return new AStarPlanner(vehicle, tasks, algorithm).build();
+		return algorithm;
 	}
 
 	@Override
 	public void planCancelled(TaskSet carriedTasks) {
-		// Intentionally empty
+		// The next call to plan is a replan; the carried tasks are known from the vehicle then
+		cancelled = true;
 	}
 }
@@ -0,0 +1,173 @@
+package template;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import logist.plan.Plan;
+import logist.simulation.Vehicle;
+import logist.task.TaskSet;
+import template.AStarPlanner.Heuristic;
+import template.State.Action;
+
+/**
+ * Hash distributed A* (HDA*): each state is owned by one worker, chosen from the state's hash. A worker has its own
+ * open list and closed set; the successors it generates are sent to the inbox of their owner.
+ *
+ * Goals don't stop the search right away: a worker can find a goal while another one still holds cheaper nodes. The
+ * best goal found so far prunes every node that cannot beat it; the search is over once no node is left, neither in
+ * an open list nor in an inbox. For that purpose, `work` counts the nodes that are either in an inbox or in an open
+ * list, and a node is only discounted once its successors have been counted.
+ */
+public class HDAStarPlanner {
+
+	private final State start;
+	private final Heuristic algorithm;
+	private final Worker[] workers;
+
+	private final AtomicLong work = new AtomicLong(0);
+	private final AtomicLong visitedCount = new AtomicLong(0);
+	private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>(null);
+
+	// Best goal found so far
+	private volatile double bestCost = Double.POSITIVE_INFINITY;
+	private PartialPlan bestGoal = null;
+
+	public HDAStarPlanner(Vehicle vehicle, TaskSet tasks, TopologyIndex topology, Heuristic algorithm, int threads) {
+		this.algorithm = algorithm;
+		this.start = State.createInitialState(vehicle, tasks, topology);
+
+		if (threads < 1)
+			throw new IllegalArgumentException("At least one thread is required");
+
+		workers = new Worker[threads];
+		for (int i = 0; i < threads; ++i) {
+			workers[i] = new Worker();
+		}
+	}
+
+	public Plan build() {
+		double heuristic = AStarPlanner.computeHeuristic(algorithm, start);
+		send(new PartialPlan(null, null, start, heuristic, 0.0));
+
+		Thread[] threads = new Thread[workers.length];
+		for (int i = 0; i < workers.length; ++i) {
+			threads[i] = new Thread(workers[i], "HDA* worker " + i);
+			threads[i].start();
+		}
+
+		try {
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while planning", e);
+		}
+
+		if (failure.get() != null)
+			throw new RuntimeException("A worker failed", failure.get());
+
+		System.out.println("# of node visited: " + visitedCount.get());
+
+		if (bestGoal == null)
+			throw new AssertionError("Should not happen.");
+
+		List<logist.plan.Action> actions = new LinkedList<logist.plan.Action>();
+		for (Action action : bestGoal.getActions()) {
+			action.appendLogistActions(actions);
+		}
+
+		return new Plan(start.currentCity, actions);
+	}
+
+	private void send(PartialPlan node) {
+		int hash = StateSpace.hash(node.lastState.key);
+		int owner = ((hash >>> 16) ^ hash) & Integer.MAX_VALUE; // the closed sets use the lowest bits
+		work.incrementAndGet();
+		workers[owner % workers.length].inbox.add(node);
+	}
+
+	private synchronized void submitGoal(PartialPlan node) {
+		if (node.knownCost < bestCost) {
+			bestGoal = node;
+			bestCost = node.knownCost;
+		}
+	}
+
+	private final class Worker implements Runnable {
+		// Nodes sent by the other workers (and this one)
+		final ConcurrentLinkedQueue<PartialPlan> inbox = new ConcurrentLinkedQueue<PartialPlan>();
+
+		// Owned by the worker's thread
+		private final PriorityQueue<PartialPlan> queue = new PriorityQueue<PartialPlan>();
+		private final ClosedSet closedSet = new ClosedSet(start.space); // best known cost of the owned states
+
+		@Override
+		public void run() {
+			try {
+				search();
+			} catch (Throwable e) {
+				failure.compareAndSet(null, e);
+			}
+		}
+
+		private void search() {
+			while (failure.get() == null) {
+				receive();
+
+				PartialPlan node = queue.poll();
+				if (node == null) {
+					if (work.get() == 0)
+						return; // nothing left anywhere
+
+					Thread.yield();
+					continue;
+				}
+
+				if (node.getCost() >= bestCost) {
+					// Nothing left to improve the best goal in this open list
+					work.addAndGet(-1 - queue.size());
+					queue.clear();
+					continue;
+				}
+
+				if (node.lastState.isFinal()) {
+					submitGoal(node);
+				} else if (node.getCost() <= closedSet.get(node.lastState)) {
+					visitedCount.incrementAndGet();
+					expand(node);
+				}
+
+				work.decrementAndGet(); // only now that its successors are counted
+			}
+		}
+
+		private void receive() {
+			PartialPlan node;
+			while ((node = inbox.poll()) != null) {
+				double cost = node.getCost();
+				if (cost < bestCost && cost < closedSet.get(node.lastState)) {
+					closedSet.put(node.lastState, cost);
+					queue.add(node);
+				} else {
+					work.decrementAndGet(); // dropped
+				}
+			}
+		}
+
+		private void expand(PartialPlan node) {
+			for (Action action : node.lastState.getLegalActions()) {
+				State lastState = action.apply();
+				double knownCost = node.knownCost + action.cost();
+				double heuristic = AStarPlanner.computeHeuristic(algorithm, lastState);
+
+				if (knownCost + heuristic < bestCost)
+					send(new PartialPlan(node, action, lastState, heuristic, knownCost));
+			}
+		}
+	}
+}
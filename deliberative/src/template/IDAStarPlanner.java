@@ -0,0 +1,86 @@
+package template;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import logist.plan.Plan;
+import logist.simulation.Vehicle;
+import logist.task.TaskSet;
+import template.AStarPlanner.Heuristic;
+import template.State.Action;
+
+/**
+ * Iterative deepening A*: depth-first searches bounded by the estimated cost (known cost + heuristic), the bound
+ * being raised to the smallest cost that exceeded it at the previous iteration.
+ *
+ * Only the current path is kept in memory; states are revisited instead. Like A*, the plan is optimal if the
+ * heuristic is admissible.
+ */
+public class IDAStarPlanner {
+
+	// Returned by search when the goal is reached
+	private static final double FOUND = Double.NEGATIVE_INFINITY;
+
+	private final State start;
+	private final Heuristic algorithm;
+
+	private PartialPlan goal = null;
+	private long visitedCount = 0;
+
+	public IDAStarPlanner(Vehicle vehicle, TaskSet tasks, TopologyIndex topology, Heuristic algorithm) {
+		this.algorithm = algorithm;
+		this.start = State.createInitialState(vehicle, tasks, topology);
+	}
+
+	public Plan build() {
+		PartialPlan root = new PartialPlan(null, null, start, AStarPlanner.computeHeuristic(algorithm, start), 0.0);
+
+		double bound = root.getCost();
+		do {
+			bound = search(root, bound);
+		} while (goal == null && bound < Double.POSITIVE_INFINITY);
+
+		if (goal == null)
+			throw new AssertionError("Should not happen.");
+
+		System.out.println("# of node visited: " + visitedCount);
+
+		List<logist.plan.Action> actions = new ArrayList<logist.plan.Action>();
+		for (Action action : goal.getActions()) {
+			action.appendLogistActions(actions);
+		}
+
+		return new Plan(start.currentCity, actions);
+	}
+
+	/**
+	 * Depth-first search below `node`; return FOUND if the goal was reached or the smallest cost exceeding `bound`
+	 */
+	private double search(PartialPlan node, double bound) {
+		double cost = node.getCost();
+		if (cost > bound)
+			return cost;
+
+		++visitedCount;
+
+		if (node.lastState.isFinal()) {
+			goal = node;
+			return FOUND;
+		}
+
+		double nextBound = Double.POSITIVE_INFINITY;
+		for (Action action : node.lastState.getLegalActions()) {
+			State lastState = action.apply();
+			double knownCost = node.knownCost + action.cost();
+			double heuristic = AStarPlanner.computeHeuristic(algorithm, lastState);
+			double result = search(new PartialPlan(node, action, lastState, heuristic, knownCost), bound);
+
+			if (result == FOUND)
+				return FOUND;
+
+			nextBound = Math.min(nextBound, result);
+		}
+
+		return nextBound;
+	}
+}
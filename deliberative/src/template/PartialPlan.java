@@ -1,34 +1,39 @@
 package template;
 
+import java.util.LinkedList;
 import java.util.List;
 
 import template.State.Action;
 
+/**
+ * Search node: the plan is only known through the parent node and the last action, so that creating a node takes
+ * constant time and memory. The full list of actions is rebuilt with getActions, once the goal is reached.
+ */
 class PartialPlan implements Comparable<PartialPlan> {
-	public final List<Action> actions; // Partial plan
+	public final PartialPlan parent; // Plan without the last action; null for the empty plan
+	public final Action lastAction; // null for the empty plan
 	public final State lastState; // Resulting state from applying the plan
 	public final double heuristicCost; // Estimated cost of applying the plan until goal is satisfied
 	public final double knownCost; // Cost of applying the plan from the start to now
 
-	public PartialPlan(List<Action> actions, State lastState, double heuristicCost, double knownCost) {
-		this.actions = actions;
+	public PartialPlan(PartialPlan parent, Action lastAction, State lastState, double heuristicCost,
+			double knownCost) {
+		this.parent = parent;
+		this.lastAction = lastAction;
 		this.lastState = lastState;
 		this.heuristicCost = heuristicCost;
 		this.knownCost = knownCost;
 	}
 
 	/**
-	 * Constructor that invalidate the comparable. Use with BFS.
-	 * 
-	 * @param actions
-	 * @param lastState
+	 * Actions from the start to this node, in order
 	 */
-	public PartialPlan(List<Action> actions, State lastState) {
-		super();
-		this.actions = actions;
-		this.lastState = lastState;
-		this.heuristicCost = 0;
-		this.knownCost = 0;
+	public List<Action> getActions() {
+		LinkedList<Action> actions = new LinkedList<Action>();
+		for (PartialPlan node = this; node.lastAction != null; node = node.parent) {
+			actions.addFirst(node.lastAction);
+		}
+		return actions;
 	}
 
 	/**
@@ -0,0 +1,110 @@
+package template;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import logist.plan.ActionHandler;
+import logist.plan.Plan;
+import logist.simulation.Vehicle;
+import logist.task.Task;
+import logist.task.TaskSet;
+import logist.topology.Topology.City;
+
+/**
+ * Repair a plan after it was cancelled: the pickups and deliveries that are still relevant are kept in the same
+ * order, the others (tasks already handled or taken by another agent) are dropped, and the vehicle travels along the
+ * shortest paths between them from its current city.
+ *
+ * The repaired plan is a valid fallback and its cost an upper bound for the next search (see AStarPlanner).
+ */
+final class PlanRepair {
+
+	public final Plan plan;
+	public final double cost; // travel cost minus the rewards, like the search algorithms
+
+	private PlanRepair(Plan plan, double cost) {
+		this.plan = plan;
+		this.cost = cost;
+	}
+
+	/**
+	 * Return null if the previous plan cannot be repaired, i.e. it doesn't cover all the tasks or the vehicle would
+	 * get overloaded
+	 */
+	public static PlanRepair repair(Plan previous, Vehicle vehicle, TaskSet available, TopologyIndex topology) {
+		// Extract the pickups (true) and deliveries (false) of the previous plan, in order
+		final List<Task> tasks = new ArrayList<Task>();
+		final List<Boolean> pickups = new ArrayList<Boolean>();
+		for (logist.plan.Action action : previous) {
+			action.accept(new ActionHandler<Void>() {
+				@Override
+				public Void moveTo(City destination) {
+					return null;
+				}
+
+				@Override
+				public Void pickup(Task task) {
+					tasks.add(task);
+					pickups.add(true);
+					return null;
+				}
+
+				@Override
+				public Void deliver(Task task) {
+					tasks.add(task);
+					pickups.add(false);
+					return null;
+				}
+			});
+		}
+
+		// Tasks are matched by id, in case logist creates new instances; the repaired plan uses the current ones
+		Map<Integer, Task> toPickUp = new HashMap<Integer, Task>();
+		for (Task task : available) {
+			toPickUp.put(task.id, task);
+		}
+		Map<Integer, Task> toDeliver = new HashMap<Integer, Task>();
+		for (Task task : vehicle.getCurrentTasks()) {
+			toDeliver.put(task.id, task);
+		}
+
+		City current = vehicle.getCurrentCity();
+		Plan plan = new Plan(current);
+		double distance = 0;
+		long rewards = 0;
+		int load = vehicle.getCurrentTasks().weightSum();
+
+		for (int i = 0; i < tasks.size(); ++i) {
+			boolean pickup = pickups.get(i);
+			int id = tasks.get(i).id;
+			Task task = pickup ? toPickUp.remove(id) : toDeliver.remove(id);
+			if (task == null)
+				continue; // not relevant anymore
+
+			City next = pickup ? task.pickupCity : task.deliveryCity;
+			distance += topology.distance(current, next);
+			topology.appendPath(plan, current, next);
+			current = next;
+
+			if (pickup) {
+				load += task.weight;
+				if (load > vehicle.capacity())
+					return null;
+
+				plan.appendPickup(task);
+				toDeliver.put(task.id, task);
+			} else {
+				load -= task.weight;
+				rewards += task.reward;
+				plan.appendDelivery(task);
+			}
+		}
+
+		if (!toPickUp.isEmpty() || !toDeliver.isEmpty())
+			return null; // some tasks were not in the previous plan
+
+		return new PlanRepair(plan, distance * vehicle.costPerKm() - rewards);
+	}
+}
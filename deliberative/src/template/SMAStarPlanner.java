@@ -0,0 +1,209 @@
+package template;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeSet;
+
+import logist.plan.Plan;
+import logist.simulation.Vehicle;
+import logist.task.TaskSet;
+import template.AStarPlanner.Heuristic;
+import template.State.Action;
+
+/**
+ * Simplified memory-bounded A*: a regular A* without closed set that keeps at most `nodeBudget` nodes in memory,
+ * counting the frontier as well as the interior nodes kept alive by their children (the budget can only be exceeded
+ * by the children of the node being expanded, until they are pruned).
+ *
+ * When the budget is exceeded, the worst leaf (highest estimated cost, shallowest) is forgotten and its cost is
+ * backed up into its parent, which goes back to the frontier with the best cost of its forgotten children. When the
+ * parent is selected again, only the forgotten children are regenerated. This way the frontier always covers every
+ * solution with a lower bound of its cost; the plan is optimal as long as the heuristic is admissible and the budget
+ * is larger than the depth of the optimal plan.
+ */
+public class SMAStarPlanner {
+
+	private static final class Node {
+		final Node parent;
+		final Action lastAction;
+		final State state;
+		final double knownCost;
+		final double cost; // estimated cost
+		final int depth;
+		final long id; // creation order; breaks ties to keep the frontier's order total
+
+		final List<Node> children = new ArrayList<Node>(0); // children still in memory
+		boolean expanded = false;
+		double forgottenCost = Double.POSITIVE_INFINITY; // best cost among the forgotten children
+		boolean inFrontier = false;
+
+		Node(Node parent, Action lastAction, State state, double knownCost, double cost, long id) {
+			this.parent = parent;
+			this.lastAction = lastAction;
+			this.state = state;
+			this.knownCost = knownCost;
+			this.cost = cost;
+			this.depth = parent == null ? 0 : parent.depth + 1;
+			this.id = id;
+		}
+
+		/**
+		 * Priority in the frontier: an expanded node is only there for its forgotten children
+		 */
+		double priority() {
+			return expanded ? forgottenCost : cost;
+		}
+	}
+
+	private final State start;
+	private final Heuristic algorithm;
+	private final int nodeBudget;
+
+	// Best node first: lowest priority, then deepest, then oldest
+	private final TreeSet<Node> frontier = new TreeSet<Node>(new Comparator<Node>() {
+		@Override
+		public int compare(Node a, Node b) {
+			int result = Double.compare(a.priority(), b.priority());
+			if (result == 0)
+				result = Integer.compare(b.depth, a.depth);
+			if (result == 0)
+				result = Long.compare(a.id, b.id);
+			return result;
+		}
+	});
+
+	private long createdCount = 0;
+	private int liveCount = 0; // nodes in memory: the root and every node still referenced by its parent
+
+	public SMAStarPlanner(Vehicle vehicle, TaskSet tasks, TopologyIndex topology, Heuristic algorithm, int nodeBudget) {
+		this.algorithm = algorithm;
+		this.nodeBudget = nodeBudget;
+		this.start = State.createInitialState(vehicle, tasks, topology);
+
+		if (nodeBudget < 2)
+			throw new IllegalArgumentException("The node budget must be at least 2");
+	}
+
+	public Plan build() {
+		double startCost = AStarPlanner.computeHeuristic(algorithm, start);
+		addToFrontier(new Node(null, null, start, 0.0, startCost, createdCount++));
+		liveCount = 1;
+
+		long visitedCount = 0;
+		while (!frontier.isEmpty()) {
+			Node node = frontier.pollFirst();
+			node.inFrontier = false;
+			++visitedCount;
+
+			if (node.state.isFinal()) {
+				System.out.println("# of node visited: " + visitedCount);
+				return buildPlan(node);
+			}
+
+			expand(node);
+
+			while (liveCount > nodeBudget) {
+				forgetWorstLeaf();
+			}
+		}
+
+		throw new AssertionError("Should not happen.");
+	}
+
+	/**
+	 * Generate the children of `node` that are not in memory
+	 */
+	private void expand(Node node) {
+		// The children of a node cannot have a lower cost than the node itself (pathmax)
+		double lowerBound = node.priority();
+
+		node.expanded = true;
+		node.forgottenCost = Double.POSITIVE_INFINITY;
+
+		for (Action action : node.state.getLegalActions()) {
+			State lastState = action.apply();
+			if (isChild(node, lastState))
+				continue; // Live children are already known
+
+			double knownCost = node.knownCost + action.cost();
+			double heuristic = AStarPlanner.computeHeuristic(algorithm, lastState);
+
+			Node child = new Node(node, action, lastState, knownCost, Math.max(lowerBound, knownCost + heuristic),
+					createdCount++);
+			node.children.add(child);
+			++liveCount;
+			addToFrontier(child);
+		}
+
+		if (node.children.isEmpty())
+			forget(node, Double.POSITIVE_INFINITY); // dead end
+	}
+
+	private void forgetWorstLeaf() {
+		Iterator<Node> candidates = frontier.descendingIterator();
+		while (candidates.hasNext()) {
+			Node node = candidates.next();
+			if (node.children.isEmpty()) {
+				candidates.remove();
+				node.inFrontier = false;
+				forget(node, node.priority());
+				return;
+			}
+		}
+
+		throw new AssertionError("Should not happen.");
+	}
+
+	/**
+	 * Remove `node`, which has no children in memory, and back up its cost into its parent
+	 */
+	private void forget(Node node, double cost) {
+		Node parent = node.parent;
+		if (parent == null)
+			return;
+
+		parent.children.remove(node);
+		--liveCount;
+
+		if (parent.inFrontier)
+			frontier.remove(parent); // its priority is about to change
+		parent.forgottenCost = Math.min(parent.forgottenCost, cost);
+
+		if (parent.forgottenCost < Double.POSITIVE_INFINITY)
+			addToFrontier(parent);
+		else if (parent.children.isEmpty())
+			forget(parent, Double.POSITIVE_INFINITY); // nothing left to explore there
+		else
+			parent.inFrontier = false;
+	}
+
+	private void addToFrontier(Node node) {
+		frontier.add(node);
+		node.inFrontier = true;
+	}
+
+	private static boolean isChild(Node node, State state) {
+		for (Node child : node.children) {
+			if (child.state.equals(state))
+				return true;
+		}
+		return false;
+	}
+
+	private Plan buildPlan(Node node) {
+		LinkedList<Action> path = new LinkedList<Action>();
+		for (; node.lastAction != null; node = node.parent) {
+			path.addFirst(node.lastAction);
+		}
+
+		List<logist.plan.Action> actions = new ArrayList<logist.plan.Action>();
+		for (Action action : path) {
+			action.appendLogistActions(actions);
+		}
+
+		return new Plan(start.currentCity, actions);
+	}
+}
@@ -1,13 +1,11 @@
 package template;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
 
-import logist.plan.Plan;
 import logist.simulation.Vehicle;
-import logist.task.Task;
 import logist.task.TaskSet;
 import logist.topology.Topology.City;
 
@@ -16,96 +14,123 @@ public class State {
 	/**
 	 * Create the initial state for the given vehicle and the task list
 	 */
-	public static State createInitialState(Vehicle vehicle, TaskSet tasks) {
-		TaskSet currentTasks = vehicle.getCurrentTasks();
-		int remainingCapacity = vehicle.capacity() - currentTasks.weightSum();
-		return new State(vehicle.getCurrentCity(), currentTasks, tasks, remainingCapacity, vehicle.costPerKm());
+	public static State createInitialState(Vehicle vehicle, TaskSet tasks, TopologyIndex topology) {
+		return new StateSpace(vehicle, tasks, topology).getInitialState();
 	}
 
 	/**
 	 * City currently in
 	 */
 	public final City currentCity;
-	/**
-	 * Tasks on board
-	 */
-	public final TaskSet deliveries;
-	/**
-	 * Task available on the topology
-	 */
-	public final TaskSet availableTasks;
 	/**
 	 * Remaining available capacity on the vehicle
 	 */
 	public final int remainingCapacity;
 
-	// We need to keep track of that in order to compute the cost of an action.
-	private final int costPerKm;
+	// The tasks, the vehicle and the topology are shared by all states
+	final StateSpace space;
+	// Compact encoding of the city and of the tasks' statuses; see StateSpace
+	final long[] key;
+
+	private final int remainingTasks; // number of tasks not delivered yet
 
-	private Plan correspondantPlan;
+	private double travelCostBound = -1; // for lazy evaluation
 
-	public State(City currentCity, TaskSet deliveries, TaskSet available, int remainingCapacity, int costPerKm) {
+	State(StateSpace space, long[] key, City currentCity, int remainingCapacity, int remainingTasks) {
+		this.space = space;
+		this.key = key;
 		this.currentCity = currentCity;
-		this.deliveries = deliveries;
-		this.availableTasks = available;
 		this.remainingCapacity = remainingCapacity;
-		this.costPerKm = costPerKm;
+		this.remainingTasks = remainingTasks;
 	}
 
 	public boolean isFinal() {
-		return deliveries.isEmpty() && availableTasks.isEmpty();
+		return remainingTasks == 0;
 	}
 
-	public void setPlan(Plan plan) {
-		this.correspondantPlan = plan;
+	/**
+	 * Sum of the rewards of the tasks that are not picked up yet
+	 */
+	public int availableRewardSum() {
+		return rewardSum(StateSpace.AVAILABLE);
 	}
 
-	public Plan getPlan() {
-		return this.correspondantPlan;
+	/**
+	 * Sum of the rewards of the tasks on board
+	 */
+	public int deliveriesRewardSum() {
+		return rewardSum(StateSpace.ON_BOARD);
 	}
 
-	public List<Action> getLegalActions() {
-
-		List<Action> actions = new ArrayList<Action>(); // The set of legal actions
-		Set<City> destinations = new HashSet<City>(); // The set of interesting destination (pickup + delivery)
-
-		// Drop case
-		for (Task t : deliveries) {
-			if (t.deliveryCity.equals(currentCity)) {
-				// We are in the same city so we can deliver it now.
-				actions.add(new Deliver(t));
-			} else {
-				// We need to go to the task's delivery site, hence we compute the path to this city and
-				// add the next city on this path to our set of interesting destinations.
-				List<City> path = currentCity.pathTo(t.deliveryCity);
-				City nextStep = path.get(0);
-				destinations.add(nextStep);
+	/**
+	 * Lower bound on the cost of the travel required to deliver all the remaining tasks: the farthest task, that is
+	 * the longest trip to the delivery city of a task on board or through the pickup city of an available task to its
+	 * delivery city, has to be completed anyway.
+	 */
+	public double travelCostBound() {
+		if (travelCostBound >= 0)
+			return travelCostBound;
+
+		final TopologyIndex topology = space.topology;
+		double longest = 0;
+		for (int i = 0; i < space.size(); ++i) {
+			switch (space.getStatus(key, i)) {
+			case StateSpace.ON_BOARD:
+				longest = Math.max(longest, topology.distance(currentCity.id, space.deliveryCities[i]));
+				break;
+
+			case StateSpace.AVAILABLE:
+				longest = Math.max(longest, topology.distance(currentCity.id, space.pickupCities[i])
+						+ topology.distance(space.pickupCities[i], space.deliveryCities[i]));
+				break;
+
+			default:
+				break; // already delivered
 			}
 		}
 
-		// Pickup case
-		for (Task t : availableTasks) {
-			// We don't go to pickup location of task, nor pickup, that don't fit in our vehicle.
-			if (t.weight > remainingCapacity)
-				continue;
-
-			if (t.pickupCity.equals(currentCity)) {
-				// We are in the same city so we can pick it up now.
-				actions.add(new Pickup(t));
-			} else {
-				// We need to go to this task's pickup site and similarly to the drop case
-				// we add the next city toward it.
-				List<City> path = currentCity.pathTo(t.pickupCity);
-				City nextStep = path.get(0);
-				destinations.add(nextStep);
-			}
+		travelCostBound = longest * space.costPerKm;
+		return travelCostBound;
+	}
 
+	private int rewardSum(int status) {
+		int sum = 0;
+		for (int i = 0; i < space.size(); ++i) {
+			if (space.getStatus(key, i) == status)
+				sum += space.rewards[i];
 		}
+		return sum;
+	}
+
+	/**
+	 * The actions are macro-actions: go to the city of a task along the shortest path, then pick it up or deliver it.
+	 * Delivering a task in the current city dominates any other action (it is free and releases capacity), so when
+	 * it is possible it is the only action considered.
+	 */
+	public List<Action> getLegalActions() {
+
+		List<Action> actions = new ArrayList<Action>(); // The set of legal actions
 
-		// Move actions
-		for (City c : destinations) {
-			assert currentCity.neighbors().contains(c); // just in case...
-			actions.add(new Move(c));
+		for (int i = 0; i < space.size(); ++i) {
+			switch (space.getStatus(key, i)) {
+			case StateSpace.ON_BOARD:
+				// Drop case
+				if (space.deliveryCities[i] == currentCity.id) {
+					// We are in the same city so we deliver it now, before anything else.
+					return Collections.<Action> singletonList(new Deliver(i));
+				}
+				actions.add(new Deliver(i));
+				break;
+
+			case StateSpace.AVAILABLE:
+				// Pickup case; we don't go to pickup location of task, nor pickup, that don't fit in our vehicle.
+				if (space.weights[i] <= remainingCapacity)
+					actions.add(new Pickup(i));
+				break;
+
+			default:
+				break; // already delivered
+			}
 		}
 
 		return actions;
@@ -123,120 +148,109 @@ public class State {
 	 * internal fields.
 	 */
 	protected abstract class Action {
-		public abstract logist.plan.Action getLogistAction();
+		public abstract void appendLogistActions(List<logist.plan.Action> actions); // the moves, then the action
 
 		public abstract State apply(); // transform the current state
 
 		public abstract double cost(); // cost (or reward) of applying the action
 
+		// Cost of the travel implied by the action, without rewards
+		public abstract double travelCost();
+
 		// Get the state back from the action
 		public final State getState() {
 			return State.this;
 		}
 	}
 
-	private final class Move extends Action {
+	/**
+	 * Go to the city of a task, then pick it up or deliver it
+	 */
+	private abstract class TaskAction extends Action {
+		public final int task; // index in the state space
 		public final City destination;
 
-		public Move(City destination) {
-			this.destination = destination;
+		public TaskAction(int task, int destination) {
+			this.task = task;
+			this.destination = space.topology.getCity(destination);
 		}
 
-		@Override
-		public logist.plan.Action getLogistAction() {
-			return new logist.plan.Action.Move(destination);
-		}
+		protected abstract logist.plan.Action getLogistAction();
 
 		@Override
-		public State apply() {
-			// Simply move to the destination
-			return new State(destination, deliveries, availableTasks, remainingCapacity, costPerKm);
+		public void appendLogistActions(List<logist.plan.Action> actions) {
+			for (City city : space.topology.pathTo(currentCity, destination)) {
+				actions.add(new logist.plan.Action.Move(city));
+			}
+			actions.add(getLogistAction());
 		}
 
 		@Override
-		public double cost() {
+		public double travelCost() {
 			// Consume energy...
-			double distance = currentCity.distanceTo(destination);
-			return distance * costPerKm;
+			return space.topology.distance(currentCity, destination) * space.costPerKm;
 		}
 	}
 
-	private final class Pickup extends Action {
-		public final Task task;
-
-		public Pickup(Task task) {
-			this.task = task;
+	private final class Pickup extends TaskAction {
+		public Pickup(int task) {
+			super(task, space.pickupCities[task]);
 		}
 
 		@Override
-		public logist.plan.Action getLogistAction() {
-			return new logist.plan.Action.Pickup(task);
+		protected logist.plan.Action getLogistAction() {
+			return new logist.plan.Action.Pickup(space.tasks[task]);
 		}
 
 		@Override
 		public State apply() {
-			assert remainingCapacity >= task.weight;
-
-			// Transfer the task from one set to the other
-			TaskSet newAvailableTasks = availableTasks.clone();
-			newAvailableTasks.remove(task);
+			assert remainingCapacity >= space.weights[task];
 
-			TaskSet newDeliveries = deliveries.clone();
-			newDeliveries.add(task);
+			// Put the task on board
+			long[] newKey = space.withCity(space.withStatus(key, task, StateSpace.ON_BOARD), destination.id);
+			int newRemainingCapacity = remainingCapacity - space.weights[task];
 
-			int newRemainingCapacity = remainingCapacity - task.weight;
-
-			return new State(currentCity, newDeliveries, newAvailableTasks, newRemainingCapacity, costPerKm);
+			return new State(space, newKey, destination, newRemainingCapacity, remainingTasks);
 		}
 
 		@Override
 		public double cost() {
 			// No reward yet
-			return 0;
+			return travelCost();
 		}
 	}
 
-	private final class Deliver extends Action {
-		public final Task task;
-
-		public Deliver(Task task) {
-			this.task = task;
+	private final class Deliver extends TaskAction {
+		public Deliver(int task) {
+			super(task, space.deliveryCities[task]);
 		}
 
 		@Override
-		public logist.plan.Action getLogistAction() {
-			return new logist.plan.Action.Delivery(task);
+		protected logist.plan.Action getLogistAction() {
+			return new logist.plan.Action.Delivery(space.tasks[task]);
 		}
 
 		@Override
 		public State apply() {
 			// Drop the task and free the truck
-			TaskSet newDeliveries = deliveries.clone();
-			newDeliveries.remove(task);
+			long[] newKey = space.withCity(space.withStatus(key, task, StateSpace.DELIVERED), destination.id);
+			int newRemainingCapacity = remainingCapacity + space.weights[task];
 
-			int newRemainingCapacity = remainingCapacity + task.weight;
-
-			return new State(currentCity, newDeliveries, availableTasks, newRemainingCapacity, costPerKm);
+			return new State(space, newKey, destination, newRemainingCapacity, remainingTasks - 1);
 		}
 
 		@Override
 		public double cost() {
 			// Reward are a good things!
-			return -task.reward;
+			return travelCost() - space.rewards[task];
 		}
 	}
 
-	// * ECLIPSE GENERATE THIS: *//
+	// The key identifies the state: the capacity and the number of remaining tasks are derived from the statuses
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((availableTasks == null) ? 0 : availableTasks.hashCode());
-		result = prime * result + ((currentCity == null) ? 0 : currentCity.hashCode());
-		result = prime * result + ((deliveries == null) ? 0 : deliveries.hashCode());
-		result = prime * result + remainingCapacity;
-		return result;
+		return StateSpace.hash(key);
 	}
 
 	@Override
@@ -248,23 +262,6 @@ public class State {
 		if (getClass() != obj.getClass())
 			return false;
 		State other = (State) obj;
-		if (availableTasks == null) {
-			if (other.availableTasks != null)
-				return false;
-		} else if (!availableTasks.equals(other.availableTasks))
-			return false;
-		if (currentCity == null) {
-			if (other.currentCity != null)
-				return false;
-		} else if (!currentCity.equals(other.currentCity))
-			return false;
-		if (deliveries == null) {
-			if (other.deliveries != null)
-				return false;
-		} else if (!deliveries.equals(other.deliveries))
-			return false;
-		if (remainingCapacity != other.remainingCapacity)
-			return false;
-		return true;
+		return space == other.space && Arrays.equals(key, other.key);
 	}
 }
@@ -0,0 +1,146 @@
+package template;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import logist.simulation.Vehicle;
+import logist.task.Task;
+import logist.task.TaskSet;
+import logist.topology.Topology.City;
+
+/**
+ * Everything the states of one search have in common: the tasks, the vehicle and the topology.
+ *
+ * It also defines the compact encoding of states: the current city id and the status of each task (2 bits per task)
+ * are packed into a `long[]` key. The city lives in the lowest bits of the first word and is followed by the tasks'
+ * statuses, in the order of the `tasks` array, from an even bit so that no status crosses two words. Usually, a
+ * single long is enough.
+ */
+final class StateSpace {
+
+	// Task statuses
+	static final int AVAILABLE = 0;
+	static final int ON_BOARD = 1;
+	static final int DELIVERED = 2;
+
+	final TopologyIndex topology;
+	final int capacity;
+	final int costPerKm;
+
+	// Tasks are identified by their index in this array, the tasks already on board come first
+	final Task[] tasks;
+	final int[] pickupCities;
+	final int[] deliveryCities;
+	final int[] weights;
+	final int[] rewards;
+
+	final int words; // length of the keys
+
+	private final int cityBits;
+	private final long cityMask;
+	private final int statusOffset; // first bit of the statuses; even, since a 2-bit field cannot cross two words
+
+	private final State initialState;
+
+	StateSpace(Vehicle vehicle, TaskSet available, TopologyIndex topology) {
+		this.topology = topology;
+		this.capacity = vehicle.capacity();
+		this.costPerKm = vehicle.costPerKm();
+
+		TaskSet onBoard = vehicle.getCurrentTasks();
+		List<Task> allTasks = new ArrayList<Task>(onBoard.size() + available.size());
+		allTasks.addAll(onBoard);
+		allTasks.addAll(available);
+
+		int n = allTasks.size();
+		tasks = allTasks.toArray(new Task[n]);
+		pickupCities = new int[n];
+		deliveryCities = new int[n];
+		weights = new int[n];
+		rewards = new int[n];
+		for (int i = 0; i < n; ++i) {
+			pickupCities[i] = tasks[i].pickupCity.id;
+			deliveryCities[i] = tasks[i].deliveryCity.id;
+			weights[i] = tasks[i].weight;
+			rewards[i] = (int) tasks[i].reward;
+		}
+
+		cityBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(topology.size - 1));
+		cityMask = (1L << cityBits) - 1;
+		statusOffset = (cityBits + 1) & ~1;
+		words = (statusOffset + 2 * n + 63) / 64;
+		assert checkEncoding();
+
+		// Build the initial state
+		City start = vehicle.getCurrentCity();
+		long[] key = withCity(new long[words], start.id);
+		for (int i = 0; i < onBoard.size(); ++i) {
+			key = withStatus(key, i, ON_BOARD);
+		}
+
+		initialState = new State(this, key, start, capacity - onBoard.weightSum(), n);
+	}
+
+	State getInitialState() {
+		return initialState;
+	}
+
+	int size() {
+		return tasks.length;
+	}
+
+	int getCityId(long[] key) {
+		return (int) (key[0] & cityMask);
+	}
+
+	int getStatus(long[] key, int task) {
+		int bit = statusOffset + 2 * task;
+		return (int) (key[bit >>> 6] >>> (bit & 63)) & 3;
+	}
+
+	/**
+	 * Copy of `key` with the given city
+	 */
+	long[] withCity(long[] key, int cityId) {
+		long[] newKey = key.clone();
+		newKey[0] = (newKey[0] & ~cityMask) | cityId;
+		return newKey;
+	}
+
+	/**
+	 * Copy of `key` where the given task has the given status
+	 */
+	long[] withStatus(long[] key, int task, int status) {
+		int bit = statusOffset + 2 * task;
+		long[] newKey = key.clone();
+		newKey[bit >>> 6] = (newKey[bit >>> 6] & ~(3L << (bit & 63))) | ((long) status << (bit & 63));
+		return newKey;
+	}
+
+	/**
+	 * Make sure every task goes through every status without altering the city or the other tasks
+	 */
+	private boolean checkEncoding() {
+		int city = topology.size - 1;
+		for (int task = 0; task < tasks.length; ++task) {
+			for (int status : new int[] { AVAILABLE, ON_BOARD, DELIVERED, AVAILABLE }) {
+				long[] key = withStatus(withCity(new long[words], city), task, status);
+				if (getCityId(key) != city || getStatus(key, task) != status)
+					return false;
+				for (int other = 0; other < tasks.length; ++other) {
+					if (other != task && getStatus(key, other) != AVAILABLE)
+						return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	static int hash(long[] key) {
+		long h = 0;
+		for (long word : key) {
+			h = (h + word) * 0x9E3779B97F4A7C15L;
+		}
+		return (int) (h ^ (h >>> 32));
+	}
+}
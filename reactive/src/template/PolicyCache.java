@@ -0,0 +1,131 @@
+package template;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import logist.task.TaskDistribution;
+import logist.topology.Topology.City;
+
+/**
+ * On-disk cache of the policies computed by ReactiveTemplate, one file per set of inputs (topology, task
+ * distribution, cost per km, gamma and epsilon); the file name holds a hash of those inputs.
+ *
+ * A file is made of a header (magic number, hash, number of cities) followed by the best action (city id, or -1) of
+ * each state, in the order of ValueIteration, as big-endian ints. It is read through a memory mapping.
+ */
+final class PolicyCache {
+
+	private static final int MAGIC = 0x52504331; // "RPC1"
+	private static final int HEADER_SIZE = 4 + 8 + 4;
+
+	private final File directory;
+
+	PolicyCache(String directory) {
+		this.directory = new File(directory);
+	}
+
+	/**
+	 * Hash of everything the policy depends on
+	 */
+	static long key(TopologyIndex topology, TaskDistribution td, int costPerKm, double gamma, double epsilon) {
+		long hash = 0xcbf29ce484222325L;
+		hash = mix(hash, topology.size);
+		for (int i = 0; i < topology.size; ++i) {
+			City from = topology.getCity(i);
+			for (City neighbor : from.neighbors()) {
+				hash = mix(hash, neighbor.id);
+			}
+			hash = mix(hash, -1); // end of the neighbors
+
+			hash = mix(hash, Double.doubleToLongBits(td.probability(from, null)));
+			for (int j = 0; j < topology.size; ++j) {
+				City to = topology.getCity(j);
+				hash = mix(hash, Double.doubleToLongBits(topology.distance(i, j)));
+				hash = mix(hash, Double.doubleToLongBits(td.probability(from, to)));
+				hash = mix(hash, td.reward(from, to));
+			}
+		}
+		hash = mix(hash, costPerKm);
+		hash = mix(hash, Double.doubleToLongBits(gamma));
+		hash = mix(hash, Double.doubleToLongBits(epsilon));
+		return hash;
+	}
+
+	// FNV-1a, one long at a time
+	private static long mix(long hash, long value) {
+		return (hash ^ value) * 0x100000001b3L;
+	}
+
+	/**
+	 * Policy stored for the given key, or null if there is none (or if it cannot be read)
+	 */
+	int[] load(long key, int n) {
+		File file = getFile(key);
+		if (!file.isFile())
+			return null;
+
+		try (RandomAccessFile input = new RandomAccessFile(file, "r"); FileChannel channel = input.getChannel()) {
+			int states = n * (n + 1);
+			if (channel.size() != HEADER_SIZE + 4L * states)
+				return null;
+
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getLong() != key || buffer.getInt() != n)
+				return null;
+
+			int[] policy = new int[states];
+			IntBuffer actions = buffer.asIntBuffer();
+			actions.get(policy);
+			return policy;
+		} catch (IOException e) {
+			System.err.println("Cannot read the policy cache " + file + ": " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Store the policy; the file is written aside then moved, so that concurrent runs never see a partial file
+	 */
+	void store(long key, int n, int[] policy) {
+		File file = getFile(key);
+		File temporary = null;
+		boolean moved = false;
+		try {
+			Files.createDirectories(directory.toPath());
+			temporary = File.createTempFile("policy-", ".tmp", directory);
+
+			ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 4 * policy.length);
+			buffer.putInt(MAGIC).putLong(key).putInt(n);
+			buffer.asIntBuffer().put(policy);
+			buffer.rewind();
+
+			try (RandomAccessFile output = new RandomAccessFile(temporary, "rw");
+					FileChannel channel = output.getChannel()) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			moved = true;
+		} catch (IOException e) {
+			System.err.println("Cannot write the policy cache " + file + ": " + e);
+		} finally {
+			// Never leave a partial file behind, e.g. when the file system cannot move it atomically
+			if (temporary != null && !moved && temporary.exists() && !temporary.delete())
+				System.err.println("Cannot delete the temporary file " + temporary);
+		}
+	}
+
+	private File getFile(long key) {
+		return new File(directory, String.format("policy-%016x.bin", key));
+	}
+}
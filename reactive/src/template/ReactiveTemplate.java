@@ -1,7 +1,6 @@
 package template;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -19,110 +18,141 @@ import logist.topology.Topology.City;
 
 public class ReactiveTemplate implements ReactiveBehavior {
 
-	// Potential table; access it through get/setPotential
-	private HashMap<State, Double> potentials = new HashMap<State, Double>();
+	// Best destination (city id, -1 if none) of each state, indexed by city.id * (n + 1) + task.id as in setup
+	private int[] policy;
+	private int noTask; // task id of the "no task" states, that is n
 
-	// Action table; best move for state/potential; use getPreferableAction
-	private HashMap<State, City> actions = new HashMap<State, City>();
+	// Precomputed distances of the topology
+	private TopologyIndex topologyIndex;
 
 	// For reward per action ration computation
 	private Agent agent;
 	private int counterSteps = 0;
+	private int reportInterval; // in steps, 0 to disable the reports
 
 	// Setup transition table for our Reactive Agent
 	@Override
 	public void setup(Topology topology, TaskDistribution td, Agent agent) {
 		// Reads the gamma factor from the agents.xml file.
 		// If the property is not present it defaults to 0.95
-		Double gamma = agent.readProperty("gamma", Double.class, 0.95);
+		double gamma = agent.readProperty("gamma", Double.class, 0.95);
+		// Value iteration stops once no potential changes by more than epsilon
+		double epsilon = agent.readProperty("epsilon", Double.class, 1e-6);
+		// SEQUENTIAL, PARALLEL or PRIORITIZED; see ValueIteration.Mode
+		String modeName = agent.readProperty("valueIteration", String.class, "SEQUENTIAL");
+		ValueIteration.Mode mode = ValueIteration.Mode.valueOf(modeName.toUpperCase());
+		int threads = agent.readProperty("threads", Integer.class, Runtime.getRuntime().availableProcessors());
+
+		// Print the profit every `reportInterval` steps
+		reportInterval = agent.readProperty("reportInterval", Integer.class, 100);
+		// Directory of the policy cache, see PolicyCache; no cache if absent
+		String cacheDirectory = agent.readProperty("policyCache", String.class, null);
 
-		List<City> tasks = new ArrayList<Topology.City>(topology.cities());
-		tasks.add(null); // The "no task" state
+		this.agent = agent;
+		topologyIndex = new TopologyIndex(topology);
 
 		Vehicle vehicle = agent.vehicles().get(0);
 
-		boolean improvement = false;
-		do {
-
-			improvement = false;
-
-			// For all states
-			for (City city : topology) {
-				for (City task : tasks) {
-
-					// Skip invalid state
-					if (city.equals(task))
-						continue;
-
-					// Current state
-					State state = new State(city, task);
-
-					double bestQ = 0.0;
-					City bestAction = null;
-
-					Set<City> dests = getLegalDestinations(state);
-
-					// Compute potential for all actions (that is, for all legal moves), and keep only the best
-					for (City action : dests) {
-						double q = reward(state, action, vehicle, td);
+		// States are indexed by (city, task): city.id * (n + 1) + task.id, the "no task" state using task n
+		final int n = topology.size();
+		final int noTask = n;
+
+		PolicyCache cache = cacheDirectory == null ? null : new PolicyCache(cacheDirectory);
+		long cacheKey = cache == null ? 0 : PolicyCache.key(topologyIndex, td, vehicle.costPerKm(), gamma, epsilon);
+		if (cache != null) {
+			int[] policy = cache.load(cacheKey, n);
+			if (policy != null) {
+				System.out.println("Policy loaded from the cache");
+				setPolicy(n, policy);
+				return;
+			}
+		}
 
-						// For all possible next state' (prime)
-						City cityP = action;
-						for (City taskP : tasks) {
-							State stateP = new State(cityP, taskP);
+		// Sparse transition table: moving to city `c` leads to the states (c, task) for
+		// task in nextStates[nextOffsets[c] .. nextOffsets[c + 1]), with probability nextProbabilities
+		int[] nextOffsets = new int[n + 1];
+		int[] nextStates = new int[n * (n + 1)];
+		double[] nextProbabilities = new double[n * (n + 1)];
+		int count = 0;
+		for (int c = 0; c < n; ++c) {
+			nextOffsets[c] = count;
+			City city = topologyIndex.getCity(c);
+			for (int task = 0; task <= n; ++task) {
+				if (task == c)
+					continue; // Invalid state
+				double probability = td.probability(city, task == noTask ? null : topologyIndex.getCity(task));
+				if (probability > 0) {
+					nextStates[count] = c * (n + 1) + task;
+					nextProbabilities[count] = probability;
+					++count;
+				}
+			}
+		}
+		nextOffsets[n] = count;
+
+		// Legal actions of each state, with their reward: the destinations of state `s` are
+		// actionCities[actionOffsets[s] .. actionOffsets[s + 1])
+		int[] actionOffsets = new int[n * (n + 1) + 1];
+		List<Integer> actionCityList = new ArrayList<Integer>();
+		List<Double> actionRewardList = new ArrayList<Double>();
+		for (int c = 0; c < n; ++c) {
+			for (int task = 0; task <= n; ++task) {
+				int s = c * (n + 1) + task;
+				actionOffsets[s] = actionCityList.size();
+				if (task == c)
+					continue; // Invalid state
+
+				State state = new State(topologyIndex.getCity(c), task == noTask ? null : topologyIndex.getCity(task));
+				for (City action : getLegalDestinations(state)) {
+					actionCityList.add(action.id);
+					actionRewardList.add(reward(state, action, vehicle, td));
+				}
+			}
+		}
+		actionOffsets[n * (n + 1)] = actionCityList.size();
 
-							q += gamma * transitionProbability(state, action, stateP, td) * getPotential(stateP);
-						}
+		int[] actionCities = new int[actionCityList.size()];
+		double[] actionRewards = new double[actionRewardList.size()];
+		for (int i = 0; i < actionCities.length; ++i) {
+			actionCities[i] = actionCityList.get(i);
+			actionRewards[i] = actionRewardList.get(i);
+		}
 
-						if (bestQ < q) {
-							bestQ = q;
-							bestAction = action;
-						}
-					}
+		// Value iteration
+		long startTime = System.currentTimeMillis();
+		ValueIteration valueIteration = new ValueIteration(n, gamma, actionOffsets, actionCities, actionRewards,
+				nextOffsets, nextStates, nextProbabilities);
+		valueIteration.solve(mode, threads, epsilon);
+		int[] bestActions = valueIteration.bestActions;
 
-					// Update potential if change
-					Double currentPotential = getPotential(state);
-					if (!currentPotential.equals(bestQ)) {
-						setPotential(state, bestQ, bestAction);
-						improvement = true;
-					}
-				}
-			}
+		System.out.println("Value iteration (" + mode + "): " + valueIteration.iterations + " iterations, max residual "
+				+ valueIteration.maxResidual + ", " + (System.currentTimeMillis() - startTime) + "ms");
 
-		} while (improvement);
+		if (cache != null)
+			cache.store(cacheKey, n, bestActions);
 
-		this.agent = agent;
+		setPolicy(n, bestActions);
 	}
 
 	@Override
 	public Action act(Vehicle vehicle, Task availableTask) {
-		if ((counterSteps > 0) && (counterSteps % 100 == 0)) {
+		if (reportInterval > 0 && counterSteps > 0 && counterSteps % reportInterval == 0) {
 			System.out.println("The total profit after " + counterSteps + " steps is " + agent.getTotalProfit() + ".");
 			System.out.println("The profit per action after " + counterSteps + " steps is "
 					+ ((double) agent.getTotalProfit() / counterSteps) + ".");
 		}
 		counterSteps++;
 
-		State state = new State(vehicle.getCurrentCity(), availableTask == null ? null : availableTask.deliveryCity);
+		int task = availableTask == null ? noTask : availableTask.deliveryCity.id;
 
 		// Choose best action
-		City destination = getPreferableAction(state);
+		int destination = policy[vehicle.getCurrentCity().id * (noTask + 1) + task];
 
 		// If the destination and the task's destination match, take the task
-		if (destination.equals(state.task)) {
+		if (destination == task) {
 			return new Pickup(availableTask);
 		} else {
-			return new Move(destination);
-		}
-	}
-
-	// Compute the probability to be in `stateP` after taking `action` from `state`
-	private double transitionProbability(State state, City action, State stateP, TaskDistribution td) {
-		if (state.city.equals(action) || state.city.equals(state.task) || state.city.equals(stateP.city)
-				|| !stateP.city.equals(action)) {
-			return 0.0;
-		} else {
-			return td.probability(stateP.city, stateP.task);
+			return new Move(topologyIndex.getCity(destination));
 		}
 	}
 
@@ -148,24 +178,14 @@ public class ReactiveTemplate implements ReactiveBehavior {
 			win = td.reward(state.city, action);
 		}
 
-		double lost = state.city.distanceTo(action) * vehicle.costPerKm();
+		double lost = topologyIndex.distance(state.city, action) * vehicle.costPerKm();
 
 		return win - lost;
 	}
 
-	private Double getPotential(State state) {
-		// By default the table is empty but by default we assume a value of 0.0
-		return potentials.getOrDefault(state, 0.0);
-	}
-
-	private City getPreferableAction(State state) {
-		return actions.get(state);
-	}
-
-	// Update the potential with the corresponding action
-	private void setPotential(State state, double potential, City action) {
-		potentials.put(state, potential);
-		actions.put(state, action);
+	private void setPolicy(int n, int[] bestActions) {
+		this.policy = bestActions;
+		this.noTask = n;
 	}
 
 }
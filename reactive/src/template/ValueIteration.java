@@ -0,0 +1,265 @@
+package template;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Value iteration over the dense tables built by ReactiveTemplate.setup.
+ *
+ * States are indexed by (city, task): city * (n + 1) + task, the "no task" state using task n. The potential of a
+ * state is the best reward of its legal actions plus the discounted expected potential of the next states, or 0 if
+ * no action is worth more.
+ */
+final class ValueIteration {
+
+	public enum Mode {
+		SEQUENTIAL, // Gauss-Seidel sweeps, in place
+		PARALLEL, // one block of states per thread: Gauss-Seidel within a block, Jacobi between blocks
+		PRIORITIZED // prioritized sweeping: back up the state with the largest Bellman residual first
+	}
+
+	private final int tasksPerCity; // n + 1
+	private final double gamma;
+
+	// The legal actions of state `s` are actionCities[actionOffsets[s] .. actionOffsets[s + 1])
+	private final int[] actionOffsets;
+	private final int[] actionCities;
+	private final double[] actionRewards;
+
+	// Moving to city `c` leads to nextStates[nextOffsets[c] .. nextOffsets[c + 1]), with probability nextProbabilities
+	private final int[] nextOffsets;
+	private final int[] nextStates;
+	private final double[] nextProbabilities;
+
+	// Results: potential and best action (city id, or -1 if none is worth it) of each state
+	double[] values;
+	final int[] bestActions;
+
+	// Convergence metrics: number of sweeps (or single backups when prioritized) and max Bellman residual at the end
+	long iterations = 0;
+	double maxResidual = 0;
+
+	ValueIteration(int n, double gamma, int[] actionOffsets, int[] actionCities, double[] actionRewards,
+			int[] nextOffsets, int[] nextStates, double[] nextProbabilities) {
+		this.tasksPerCity = n + 1;
+		this.gamma = gamma;
+		this.actionOffsets = actionOffsets;
+		this.actionCities = actionCities;
+		this.actionRewards = actionRewards;
+		this.nextOffsets = nextOffsets;
+		this.nextStates = nextStates;
+		this.nextProbabilities = nextProbabilities;
+
+		int size = actionOffsets.length - 1;
+		values = new double[size];
+		bestActions = new int[size];
+	}
+
+	void solve(Mode mode, int threads, double epsilon) {
+		switch (mode) {
+		case SEQUENTIAL:
+			solveWithSweeps(1, epsilon);
+			break;
+
+		case PARALLEL:
+			solveWithSweeps(threads, epsilon);
+			break;
+
+		case PRIORITIZED:
+			solvePrioritized(epsilon);
+			break;
+
+		default:
+			throw new AssertionError("Should not happen.");
+		}
+	}
+
+	/**
+	 * Sweep the states until no potential changes by more than epsilon. The states are split in one contiguous block
+	 * per thread; with a single block, this is plain in-place Gauss-Seidel.
+	 */
+	private void solveWithSweeps(int threads, double epsilon) {
+		final int size = values.length;
+		final int blocks = Math.max(1, Math.min(threads, size));
+		ForkJoinPool pool = blocks > 1 ? new ForkJoinPool(blocks) : null;
+
+		try {
+			double[] next = new double[size];
+			do {
+				if (pool == null) {
+					maxResidual = sweep(values, next, 0, size);
+				} else {
+					final double[] current = values;
+					final double[] updated = next;
+					List<Callable<Double>> sweeps = new ArrayList<Callable<Double>>(blocks);
+					for (int b = 0; b < blocks; ++b) {
+						final int from = (int) ((long) size * b / blocks);
+						final int to = (int) ((long) size * (b + 1) / blocks);
+						sweeps.add(new Callable<Double>() {
+							@Override
+							public Double call() {
+								return sweep(current, updated, from, to);
+							}
+						});
+					}
+
+					maxResidual = 0;
+					for (Future<Double> result : pool.invokeAll(sweeps)) {
+						maxResidual = Math.max(maxResidual, result.get());
+					}
+				}
+
+				double[] previous = values;
+				values = next;
+				next = previous;
+				++iterations;
+			} while (maxResidual > epsilon);
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException("Value iteration failed", e);
+		} finally {
+			if (pool != null)
+				pool.shutdown();
+		}
+	}
+
+	/**
+	 * Back up the states in [from, to) into `next`; the states of this block that are already updated are read from
+	 * `next`, the other ones from `current`. Return the max residual of the block.
+	 */
+	private double sweep(double[] current, double[] next, int from, int to) {
+		double residual = 0;
+		for (int s = from; s < to; ++s) {
+			double bestQ = 0.0;
+			int bestAction = -1;
+
+			for (int k = actionOffsets[s]; k < actionOffsets[s + 1]; ++k) {
+				int action = actionCities[k];
+				double q = actionRewards[k];
+
+				// For all possible next state' (prime)
+				for (int t = nextOffsets[action]; t < nextOffsets[action + 1]; ++t) {
+					int stateP = nextStates[t];
+					double potential = stateP >= from && stateP < s ? next[stateP] : current[stateP];
+					q += gamma * nextProbabilities[t] * potential;
+				}
+
+				if (bestQ < q) {
+					bestQ = q;
+					bestAction = action;
+				}
+			}
+
+			residual = Math.max(residual, Math.abs(bestQ - current[s]));
+			next[s] = bestQ;
+			bestActions[s] = bestAction;
+		}
+		return residual;
+	}
+
+	private static final class Entry implements Comparable<Entry> {
+		final int state;
+		final double residual;
+
+		Entry(int state, double residual) {
+			this.state = state;
+			this.residual = residual;
+		}
+
+		@Override
+		public int compareTo(Entry o) {
+			return Double.compare(o.residual, residual); // largest residual first
+		}
+	}
+
+	/**
+	 * Back up one state at a time, the one with the largest residual first; when a potential changes, the residuals
+	 * of the states that can reach it are updated. Stop when no residual is above epsilon.
+	 */
+	private void solvePrioritized(double epsilon) {
+		final int size = values.length;
+		final int cities = nextOffsets.length - 1;
+
+		// The states with an action toward city `c` are predecessors[predecessorOffsets[c] .. [c + 1])
+		int[] predecessorOffsets = new int[cities + 1];
+		for (int k = 0; k < actionCities.length; ++k) {
+			++predecessorOffsets[actionCities[k] + 1];
+		}
+		for (int c = 0; c < cities; ++c) {
+			predecessorOffsets[c + 1] += predecessorOffsets[c];
+		}
+		int[] predecessors = new int[actionCities.length];
+		int[] fill = predecessorOffsets.clone();
+		for (int s = 0; s < size; ++s) {
+			for (int k = actionOffsets[s]; k < actionOffsets[s + 1]; ++k) {
+				predecessors[fill[actionCities[k]]++] = s;
+			}
+		}
+
+		double[] residuals = new double[size];
+		double[] backups = new double[size]; // Bellman backup of each state for the current potentials
+		PriorityQueue<Entry> queue = new PriorityQueue<Entry>();
+		for (int s = 0; s < size; ++s) {
+			backups[s] = backup(s);
+			residuals[s] = Math.abs(backups[s] - values[s]);
+			if (residuals[s] > epsilon)
+				queue.add(new Entry(s, residuals[s]));
+		}
+
+		while (!queue.isEmpty()) {
+			Entry entry = queue.poll();
+			int s = entry.state;
+			if (entry.residual != residuals[s])
+				continue; // outdated entry
+
+			values[s] = backups[s];
+			residuals[s] = 0;
+			++iterations;
+
+			int city = s / tasksPerCity;
+			for (int i = predecessorOffsets[city]; i < predecessorOffsets[city + 1]; ++i) {
+				int p = predecessors[i];
+				backups[p] = backup(p);
+				double residual = Math.abs(backups[p] - values[p]);
+				if (residual != residuals[p]) {
+					residuals[p] = residual;
+					if (residual > epsilon)
+						queue.add(new Entry(p, residual));
+				}
+			}
+		}
+
+		maxResidual = 0;
+		for (int s = 0; s < size; ++s) {
+			maxResidual = Math.max(maxResidual, residuals[s]);
+		}
+	}
+
+	/**
+	 * Bellman backup of state `s` from the current potentials; also update its best action
+	 */
+	private double backup(int s) {
+		double bestQ = 0.0;
+		int bestAction = -1;
+
+		for (int k = actionOffsets[s]; k < actionOffsets[s + 1]; ++k) {
+			int action = actionCities[k];
+			double q = actionRewards[k];
+			for (int t = nextOffsets[action]; t < nextOffsets[action + 1]; ++t) {
+				q += gamma * nextProbabilities[t] * values[nextStates[t]];
+			}
+
+			if (bestQ < q) {
+				bestQ = q;
+				bestAction = action;
+			}
+		}
+
+		bestActions[s] = bestAction;
+		return bestQ;
+	}
+}